@@ -0,0 +1,65 @@
+package com.common;
+/*
+ * author: xstahl01
+ * Interface for the storage behind the game board. Cells are addressed by a row-major index and hold the node
+ * type, the connector mask (see Side.bit()), the number of rotations, the lit flag and the side the light comes
+ * from. Nodes are only views over this storage.
+ */
+
+public interface BoardStore {
+    int TYPE_EMPTY = 0;
+    int TYPE_POWER = 1;
+    int TYPE_BULB = 2;
+    int TYPE_LINK = 3;
+
+    // feed of a cell: side (index into Connectors.SIDES) of the neighbour it gets its light from
+    int FEED_NONE = -1;
+    int FEED_SOURCE = 4; // the power node itself
+
+    int rows();
+
+    int cols();
+
+    default int size() {
+        return rows() * cols();
+    }
+
+    // positions are 1-based like in the rest of the game
+    default int index(int row, int col) {
+        return (row - 1) * cols() + (col - 1);
+    }
+
+    default int rowOf(int index) {
+        return index / cols() + 1;
+    }
+
+    default int colOf(int index) {
+        return index % cols() + 1;
+    }
+
+    int type(int index);
+
+    int mask(int index);
+
+    int rotation(int index);
+
+    boolean lit(int index);
+
+    int feed(int index);
+
+    void set(int index, int type, int mask);
+
+    void setMask(int index, int mask);
+
+    void setRotation(int index, int rotation);
+
+    void setLit(int index, boolean lit);
+
+    void setFeed(int index, int feed);
+
+    // switches every cell off and forgets where its light came from
+    void clearLit();
+
+    // xor of the Zobrist keys of all cells (type and mask), kept up to date by set() and setMask()
+    long stateHash();
+}
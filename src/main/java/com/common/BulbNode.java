@@ -3,12 +3,10 @@ package com.common;
  * @author: xstahl01
  * This class represents a BulbNode in the game and it's functionality.
  */
-import java.util.StringJoiner;
 
 public class BulbNode extends GameNode {
-    public BulbNode(Position position, Side side) {
-        super(position);
-        this.connectors.add(side);
+    public BulbNode(BoardStore store, Position position) {
+        super(store, position);
     }
 
     @Override
@@ -23,42 +21,8 @@ public class BulbNode extends GameNode {
     @Override
     public boolean isEmpty(){return false;}
 
-    public void turn() {
-        // Rotate the connector
-        Side current = connectors.iterator().next();
-        connectors.clear();
-        connectors.add(switch (current) {
-            case NORTH -> Side.EAST;
-            case SOUTH -> Side.WEST;
-            case WEST -> Side.NORTH;
-            case EAST -> Side.SOUTH;
-        });
-        rotations = (rotations + 1) % 4;
-        notifyObservers();
-    }
-
-    public void reverseTurn() {
-        // Rotate the connector in the opposite direction
-        Side current = connectors.iterator().next();
-        connectors.clear();
-        connectors.add(switch (current) {
-            case NORTH -> Side.WEST;
-            case SOUTH -> Side.EAST;
-            case WEST -> Side.SOUTH;
-            case EAST -> Side.NORTH;
-        });
-        rotations = (rotations + 3) % 4;
-        notifyObservers();
-    }
-
     @Override
     public String toString() {
-        StringJoiner sj = new StringJoiner(",");
-        for (Side side : new Side[] {Side.NORTH, Side.EAST, Side.SOUTH, Side.WEST}) {
-            if (containsConnector(side)) {
-                sj.add(side.name());
-            }
-        }
-        return String.format("{B[%d@%d][%s][%d]}", position.row(), position.col(), sj, rotations);
+        return String.format("{B[%d@%d][%s][%d]}", position.row(), position.col(), connectorNames(), getRotations());
     }
 }
@@ -0,0 +1,74 @@
+package com.common;
+/*
+ * author: xstahl01
+ * Lookup tables for connector masks (one bit per side, see Side.bit()). Turning a node or asking for the
+ * opposite connectors is a single array read, nothing gets allocated.
+ */
+
+public final class Connectors {
+    // sides in clockwise order, side i has the bit 1 << i
+    public static final Side[] SIDES = {Side.NORTH, Side.EAST, Side.SOUTH, Side.WEST};
+
+    private static final byte[] CLOCKWISE = new byte[16];
+    private static final byte[] COUNTER_CLOCKWISE = new byte[16];
+    private static final byte[] OPPOSITE = new byte[16];
+    private static final Side[] OPPOSITE_SIDE = new Side[SIDES.length];
+    private static final byte[] ORIENTATIONS = new byte[16];
+
+    static {
+        for (int i = 0; i < SIDES.length; i++) {
+            OPPOSITE_SIDE[SIDES[i].ordinal()] = SIDES[(i + 2) % SIDES.length];
+        }
+        for (int mask = 0; mask < 16; mask++) {
+            CLOCKWISE[mask] = (byte) ((mask << 1 | mask >>> 3) & 0xF);
+            COUNTER_CLOCKWISE[mask] = (byte) ((mask >>> 1 | mask << 3) & 0xF);
+            OPPOSITE[mask] = (byte) ((mask << 2 | mask >>> 2) & 0xF);
+        }
+        for (int mask = 0; mask < 16; mask++) {
+            int turned = CLOCKWISE[mask];
+            ORIENTATIONS[mask] = 1;
+            while (turned != mask) {
+                ORIENTATIONS[mask]++;
+                turned = CLOCKWISE[turned];
+            }
+        }
+    }
+
+    private Connectors() {
+    }
+
+    public static int rotateClockwise(int mask) {
+        return CLOCKWISE[mask];
+    }
+
+    public static int rotateCounterClockwise(int mask) {
+        return COUNTER_CLOCKWISE[mask];
+    }
+
+    // mask with every connector pointing the other way (NORTH <-> SOUTH, EAST <-> WEST)
+    public static int opposite(int mask) {
+        return OPPOSITE[mask];
+    }
+
+    public static Side opposite(Side side) {
+        return OPPOSITE_SIDE[side.ordinal()];
+    }
+
+    public static int count(int mask) {
+        return Integer.bitCount(mask);
+    }
+
+    // different states the shape goes through when turned: 1 for a cross (or nothing), 2 for a straight link, else 4
+    public static int orientations(int mask) {
+        return ORIENTATIONS[mask];
+    }
+
+    // fewest clockwise turns from one mask to the other, -1 when the other one is not a rotation of it
+    public static int turnsBetween(int from, int to) {
+        for (int turns = 0; turns < ORIENTATIONS[from]; turns++) {
+            if (from == to) return turns;
+            from = CLOCKWISE[from];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,108 @@
+package com.common;
+/*
+ * author: xstahl01
+ * Board storage that keeps every cell in row-major primitive arrays. Uses a few bytes per cell instead of a node
+ * object, a set of connectors and a set of observers.
+ */
+
+import java.util.Arrays;
+
+public class DenseBoardStore implements BoardStore {
+    private final int rows;
+    private final int cols;
+    private final byte[] types;
+    private final byte[] masks;
+    private final byte[] rotations;
+    private final boolean[] lit;
+    private final byte[] feeds; // feed + 1, so a new array means FEED_NONE everywhere
+    private long hash; // see stateHash()
+
+    public DenseBoardStore(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) throw new IllegalArgumentException("Invalid dimensions");
+        this.rows = rows;
+        this.cols = cols;
+        int size = Math.multiplyExact(rows, cols);
+        this.types = new byte[size];
+        this.masks = new byte[size];
+        this.rotations = new byte[size];
+        this.lit = new boolean[size];
+        this.feeds = new byte[size];
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public int type(int index) {
+        return types[index];
+    }
+
+    @Override
+    public int mask(int index) {
+        return masks[index];
+    }
+
+    @Override
+    public int rotation(int index) {
+        return rotations[index];
+    }
+
+    @Override
+    public boolean lit(int index) {
+        return lit[index];
+    }
+
+    @Override
+    public int feed(int index) {
+        return feeds[index] - 1;
+    }
+
+    @Override
+    public void set(int index, int type, int mask) {
+        hash ^= Zobrist.key(index, types[index], masks[index]) ^ Zobrist.key(index, type, mask & 0xF);
+        types[index] = (byte) type;
+        masks[index] = (byte) (mask & 0xF);
+        rotations[index] = 0;
+        lit[index] = false;
+        feeds[index] = 0;
+    }
+
+    @Override
+    public void setMask(int index, int mask) {
+        hash ^= Zobrist.key(index, types[index], masks[index]) ^ Zobrist.key(index, types[index], mask & 0xF);
+        masks[index] = (byte) (mask & 0xF);
+    }
+
+    @Override
+    public void setRotation(int index, int rotation) {
+        rotations[index] = (byte) (rotation & 3);
+    }
+
+    @Override
+    public void setLit(int index, boolean lit) {
+        this.lit[index] = lit;
+    }
+
+    @Override
+    public void setFeed(int index, int feed) {
+        feeds[index] = (byte) (feed + 1);
+    }
+
+    @Override
+    public void clearLit() {
+        Arrays.fill(lit, false);
+        Arrays.fill(feeds, (byte) 0);
+    }
+
+    @Override
+    public long stateHash() {
+        return hash;
+    }
+}
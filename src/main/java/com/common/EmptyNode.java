@@ -4,11 +4,20 @@ package com.common;
  * This class represents an EmptyNode in the game and its functionality.
  */
 
+import com.tool.Observable;
+
 import java.util.Set;
 
 public class EmptyNode extends GameNode {
-    public EmptyNode(Position position) {
-        super(position);
+    // immutable empty node without a position, sparse boards return it for every empty cell
+    public static final EmptyNode SHARED = new EmptyNode();
+
+    public EmptyNode(BoardStore store, Position position) {
+        super(store, position);
+    }
+
+    private EmptyNode() {
+        super();
     }
 
     @Override
@@ -53,8 +62,46 @@ public class EmptyNode extends GameNode {
         return Set.of();
     }
 
+    @Override
+    public int connectorMask() {
+        return 0;
+    }
+
+    @Override
+    public boolean light() {
+        return false;
+    }
+
+    @Override
+    public void setLit(boolean lit) {
+        // This method is intentionally left empty because an EmptyNode is never part of the circuit.
+    }
+
+    @Override
+    public int getRotations() {
+        return store == null ? 0 : super.getRotations();
+    }
+
+    @Override
+    public void setRotations(int rotations) {
+        if (store != null) super.setRotations(rotations);
+    }
+
+    @Override
+    public void addConnector(Side side) {
+        if (store == null) throw new UnsupportedOperationException("The shared EmptyNode cannot be changed");
+        super.addConnector(side);
+    }
+
+    @Override
+    public void addObserver(Observable.Observer observer) {
+        // the shared node never changes, so there is nothing to observe
+        if (store != null) super.addObserver(observer);
+    }
+
     @Override
     public String toString() {
+        if (position == null) return "{E[]}";
         return String.format("{E[%d@%d][]}", position.row(), position.col());
     }
 }
\ No newline at end of file
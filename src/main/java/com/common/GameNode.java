@@ -1,36 +1,54 @@
 package com.common;
 /*
  * author: xstahl01
- * This is the abstract class for all nodes in the game.
+ * This is the abstract class for all nodes in the game. A node is only a view over one cell of the BoardStore,
+ * all of its state (connectors, rotations, light) lives in the store.
  */
 
 import com.tool.AbstractObservableField;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.StringJoiner;
 
 public abstract class GameNode extends AbstractObservableField {
-    protected Position position;
-    protected boolean lit = false;
-    protected Set<Side> connectors = new HashSet<>();
-    protected int rotations = 0;
+    protected final BoardStore store;
+    protected final int index;
+    protected final Position position;
 
     public abstract boolean isEmpty();
     public abstract String toString();
 
-    public GameNode(Position position) {
+    public GameNode(BoardStore store, Position position) {
+        this.store = store;
         this.position = position;
+        this.index = store.index(position.row(), position.col());
+    }
+
+    // for views that do not belong to a single cell
+    protected GameNode() {
+        this.store = null;
+        this.position = null;
+        this.index = -1;
     }
 
     public Position getPosition() {
         return this.position;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     public boolean containsConnector(Side s){
-        return connectors.contains(s);
+        return (store.mask(index) & s.bit()) != 0;
     }
+    // allocation-free alternative to getConnectors(), one bit per side (see Side.bit())
+    public int connectorMask() {
+        return store.mask(index);
+    }
+
     public Set<Side> getConnectors(){
-        return new HashSet<>(connectors);
+        return Side.fromMask(store.mask(index));
     }
 
     public boolean north() { return containsConnector(Side.NORTH); }
@@ -42,25 +60,58 @@ public abstract class GameNode extends AbstractObservableField {
     public boolean west() { return containsConnector(Side.WEST); }
 
     public boolean light(){
-        return lit;
+        return store.lit(index);
     }
 
     public void setLit(boolean lit){
-        if(this.lit != lit){
-            this.lit = lit;
+        if(store.lit(index) != lit){
+            store.setLit(index, lit);
             notifyObservers();
         }
     }
 
     public void addConnector(Side side) {
-        connectors.add(side);
+        store.setMask(index, store.mask(index) | side.bit());
     }
 
     public int getRotations() {
-        return rotations;
+        return store.rotation(index);
     }
     public void setRotations(int rotations) {
-        this.rotations = rotations % 4;
+        store.setRotation(index, rotations % 4);
+    }
+
+    // see Connectors.orientations(), turning a symmetric node through the other states changes nothing
+    public int orientations() {
+        return Connectors.orientations(connectorMask());
     }
 
+    // rotations counted once per different state, 0 whenever the node looks as it did before the first turn
+    public int normalizedRotations() {
+        return getRotations() % orientations();
+    }
+
+    @Override
+    public void turn() {
+        store.setMask(index, Connectors.rotateClockwise(store.mask(index)));
+        store.setRotation(index, (store.rotation(index) + 1) % 4);
+        notifyObservers();
+    }
+
+    @Override
+    public void reverseTurn() {
+        store.setMask(index, Connectors.rotateCounterClockwise(store.mask(index)));
+        store.setRotation(index, (store.rotation(index) + 3) % 4); // equivalent to -1 mod 4
+        notifyObservers();
+    }
+
+    protected String connectorNames() {
+        StringJoiner sj = new StringJoiner(",");
+        for (Side side : Connectors.SIDES) {
+            if (containsConnector(side)) {
+                sj.add(side.name());
+            }
+        }
+        return sj.toString();
+    }
 }
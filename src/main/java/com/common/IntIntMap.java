@@ -0,0 +1,123 @@
+package com.common;
+/*
+ * author: xstahl01
+ * Small hash map from non-negative int keys to int values. Keys and values live in two primitive arrays
+ * (open addressing with linear probing), so nothing is boxed and an entry costs 8 bytes plus free slots.
+ */
+
+import java.util.Arrays;
+
+public class IntIntMap {
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // negative keys are never stored, -1 would otherwise match a free slot
+    public boolean containsKey(int key) {
+        return key >= 0 && keys[find(key)] == key;
+    }
+
+    public int get(int key, int defaultValue) {
+        if (key < 0) return defaultValue;
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    public void put(int key, int value) {
+        if (key < 0) throw new IllegalArgumentException("Keys must not be negative");
+        int slot = find(key);
+        if (keys[slot] != key) {
+            if ((size + 1) * 4 > keys.length * 3) { // keep the load factor under 0.75
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    public void remove(int key) {
+        if (key < 0) return;
+        int slot = find(key);
+        if (keys[slot] != key) return;
+        // shift the following entries of the probe run back, so lookups never stop at a hole
+        int mask = keys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (keys[next] == FREE) break;
+            int home = hash(keys[next]) & mask;
+            boolean between = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!between) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = FREE;
+        size--;
+    }
+
+    // slots are visited in table order, a slot is used when keyAt() is not negative
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    public void setValueAt(int slot, int value) {
+        values[slot] = value;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, FREE);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -5,4 +5,24 @@ package com.common;
  */
 
 public record Position(int row, int col) {
+    // positions with row and col below this limit are shared, that covers every board the UI can create
+    private static final int CACHE_LIMIT = 128;
+    private static final Position[] CACHE = new Position[CACHE_LIMIT * CACHE_LIMIT];
+
+    /*
+     * Returns a shared instance for small coordinates instead of allocating a new one. Positions are immutable,
+     * so two threads racing to fill the same slot only create one extra object.
+     */
+    public static Position of(int row, int col) {
+        if (row < 0 || col < 0 || row >= CACHE_LIMIT || col >= CACHE_LIMIT) {
+            return new Position(row, col);
+        }
+        int slot = row * CACHE_LIMIT + col;
+        Position position = CACHE[slot];
+        if (position == null) {
+            position = new Position(row, col);
+            CACHE[slot] = position;
+        }
+        return position;
+    }
 }
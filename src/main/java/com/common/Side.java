@@ -4,6 +4,46 @@ package com.common;
  * Enum to represent the four sides of a node in the game.
  */
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum Side {
-    NORTH, WEST, SOUTH, EAST;
+    NORTH(1), WEST(8), SOUTH(4), EAST(2);
+
+    // bits go clockwise (N, E, S, W) so a clockwise turn is a left shift of the mask
+    private final int bit;
+
+    Side(int bit) {
+        this.bit = bit;
+    }
+
+    public int bit() {
+        return bit;
+    }
+
+    public static int maskOf(Iterable<Side> sides) {
+        int mask = 0;
+        for (Side side : sides) {
+            mask |= side.bit;
+        }
+        return mask;
+    }
+
+    public static int maskOf(Side... sides) {
+        int mask = 0;
+        for (Side side : sides) {
+            mask |= side.bit;
+        }
+        return mask;
+    }
+
+    public static Set<Side> fromMask(int mask) {
+        Set<Side> sides = EnumSet.noneOf(Side.class);
+        for (Side side : values()) {
+            if ((mask & side.bit) != 0) {
+                sides.add(side);
+            }
+        }
+        return sides;
+    }
 }
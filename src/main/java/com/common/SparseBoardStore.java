@@ -0,0 +1,123 @@
+package com.common;
+/*
+ * author: xstahl01
+ * Board storage that keeps only the non-empty cells. Each of them is packed into a single int of a primitive
+ * hash map, a cell that is not in the map is empty. Meant for big boards where most of the cells stay empty.
+ */
+
+public class SparseBoardStore implements BoardStore {
+    // layout of a packed cell
+    private static final int TYPE_BITS = 0x3;
+    private static final int MASK_SHIFT = 2;
+    private static final int ROTATION_SHIFT = 6;
+    private static final int LIT_BIT = 1 << 8;
+    private static final int FEED_SHIFT = 9;
+
+    private final int rows;
+    private final int cols;
+    private final IntIntMap cells = new IntIntMap();
+    private long hash; // see stateHash()
+
+    public SparseBoardStore(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) throw new IllegalArgumentException("Invalid dimensions");
+        Math.multiplyExact(rows, cols); // indexes have to fit into an int
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    // number of non-empty cells
+    public int nodeCount() {
+        return cells.size();
+    }
+
+    @Override
+    public int type(int index) {
+        return cells.get(index, TYPE_EMPTY) & TYPE_BITS;
+    }
+
+    @Override
+    public int mask(int index) {
+        return cells.get(index, 0) >>> MASK_SHIFT & 0xF;
+    }
+
+    @Override
+    public int rotation(int index) {
+        return cells.get(index, 0) >>> ROTATION_SHIFT & 3;
+    }
+
+    @Override
+    public boolean lit(int index) {
+        return (cells.get(index, 0) & LIT_BIT) != 0;
+    }
+
+    @Override
+    public int feed(int index) {
+        return (cells.get(index, 0) >>> FEED_SHIFT & 0x7) - 1;
+    }
+
+    @Override
+    public void set(int index, int type, int mask) {
+        hash ^= Zobrist.key(index, type(index), mask(index)) ^ Zobrist.key(index, type, mask & 0xF);
+        if (type == TYPE_EMPTY) {
+            cells.remove(index);
+        } else {
+            cells.put(index, type | (mask & 0xF) << MASK_SHIFT);
+        }
+    }
+
+    // empty cells keep no state, so writes to them are ignored
+    private void update(int index, int clear, int bits) {
+        int cell = cells.get(index, TYPE_EMPTY);
+        if (cell != TYPE_EMPTY) {
+            cells.put(index, cell & ~clear | bits);
+        }
+    }
+
+    @Override
+    public void setMask(int index, int mask) {
+        int cell = cells.get(index, TYPE_EMPTY);
+        if (cell == TYPE_EMPTY) return; // as in update()
+        int type = cell & TYPE_BITS;
+        hash ^= Zobrist.key(index, type, cell >>> MASK_SHIFT & 0xF) ^ Zobrist.key(index, type, mask & 0xF);
+        cells.put(index, cell & ~(0xF << MASK_SHIFT) | (mask & 0xF) << MASK_SHIFT);
+    }
+
+    @Override
+    public void setRotation(int index, int rotation) {
+        update(index, 3 << ROTATION_SHIFT, (rotation & 3) << ROTATION_SHIFT);
+    }
+
+    @Override
+    public void setLit(int index, boolean lit) {
+        update(index, LIT_BIT, lit ? LIT_BIT : 0);
+    }
+
+    @Override
+    public void setFeed(int index, int feed) {
+        update(index, 0x7 << FEED_SHIFT, (feed + 1) << FEED_SHIFT);
+    }
+
+    @Override
+    public void clearLit() {
+        for (int slot = 0; slot < cells.capacity(); slot++) {
+            if (cells.keyAt(slot) >= 0) {
+                cells.setValueAt(slot, cells.valueAt(slot) & ~(LIT_BIT | 0x7 << FEED_SHIFT));
+            }
+        }
+    }
+
+    @Override
+    public long stateHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,27 @@
+package com.common;
+/*
+ * author: xstahl01
+ * Zobrist keys for the cells of a board. The hash of a board is the xor of the keys of its cells, so changing one
+ * cell changes the hash in O(1): xor out the old key, xor in the new one. The keys are mixed from the cell itself
+ * (splitmix64) instead of read from a random table, big boards need no table of 16 keys per cell.
+ */
+
+public final class Zobrist {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private Zobrist() {
+    }
+
+    // key of a cell with the given type (BoardStore.TYPE_*) and connector mask, 0 for an empty cell
+    public static long key(int index, int type, int mask) {
+        if (type == BoardStore.TYPE_EMPTY) return 0;
+        return mix(SEED + ((long) index << 6 | (long) type << 4 | mask & 0xF));
+    }
+
+    // splitmix64 finalizer, every input bit changes about half of the output bits
+    private static long mix(long z) {
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+}
@@ -0,0 +1,91 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Generates many levels at once without the GUI, spread over all cores:
+ *   java -cp target/classes com.game.BatchGenerator <levels> <rows> <cols> <Easy|Medium|Hard> [seed] [output dir] [unique]
+ * Every level gets its own SplittableRandom split from the master seed in level order, so the same seed always
+ * gives the same levels, no matter which thread builds which level. Layouts are saved as level1.txt, level2.txt, ...
+ * to the output directory (data/level_layout/batch by default).
+ */
+
+import com.ui.Difficulty;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class BatchGenerator {
+    private final int rows;
+    private final int cols;
+    private final Difficulty difficulty;
+    private final long seed;
+    private final Path outputDir;
+    private boolean uniqueSolution = false;
+
+    public BatchGenerator(int rows, int cols, Difficulty difficulty, long seed, Path outputDir) {
+        this.rows = rows;
+        this.cols = cols;
+        this.difficulty = difficulty;
+        this.seed = seed;
+        this.outputDir = outputDir;
+    }
+
+    public void setUniqueSolution(boolean uniqueSolution) {
+        this.uniqueSolution = uniqueSolution;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.err.println("usage: BatchGenerator <levels> <rows> <cols> <Easy|Medium|Hard> [seed] [output dir] [unique]");
+            System.exit(1);
+        }
+        int levels = Integer.parseInt(args[0]);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        Path outputDir = args.length > 5 ? Paths.get(args[5]) : Paths.get("data", "level_layout", "batch");
+        BatchGenerator batch = new BatchGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Difficulty.valueOf(args[3]), seed, outputDir);
+        batch.setUniqueSolution(args.length > 6 && args[6].equals("unique"));
+
+        long start = System.nanoTime();
+        int unique = batch.generate(levels);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d levels in %.2f s, %.1f levels/s, seed %d, %s%n", levels, seconds, levels / seconds, seed,
+                outputDir);
+        if (batch.uniqueSolution) System.out.println(unique + " levels with a unique solution");
+    }
+
+    // generates levels 1..levels in parallel, returns how many of them passed the unique check (0 when not asked for)
+    public int generate(int levels) {
+        SplittableRandom master = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[levels];
+        for (int i = 0; i < levels; i++) {
+            randoms[i] = master.split();
+        }
+        AtomicInteger unique = new AtomicInteger();
+        IntStream.range(0, levels).parallel().forEach(i -> {
+            LevelGenerator generator = generator(randoms[i]);
+            generator.generateLevel(rows, cols, difficulty, i + 1);
+            if (generator.isLastUnique()) unique.incrementAndGet(); // already checked while generating
+        });
+        return unique.get();
+    }
+
+    // builds only the given level of the batch again
+    public Game generateLevel(int levelNumber) {
+        SplittableRandom master = new SplittableRandom(seed);
+        SplittableRandom random = master.split();
+        for (int i = 1; i < levelNumber; i++) {
+            random = master.split();
+        }
+        return generator(random).generateLevel(rows, cols, difficulty, levelNumber);
+    }
+
+    private LevelGenerator generator(SplittableRandom random) {
+        LevelGenerator generator = new LevelGenerator(random);
+        generator.setLayoutDir(outputDir);
+        generator.setUniqueSolution(uniqueSolution);
+        return generator;
+    }
+}
@@ -9,33 +9,66 @@ import com.tool.Observable;
 import com.tool.ToolEnvironment;
 import com.tool.ToolField;
 import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.random.RandomGenerator;
 
 public class Game implements ToolEnvironment, Observable.Observer {
+    private static final int INCREMENTAL_BATCH_LIMIT = 16;
     private final int rows; // cannot be cancelled after initialization
     private final int cols;
-    private final Map<Position, GameNode> board;
+    private final BoardStore store;
+    private final boolean sparse;
+    // node objects are created lazily, the state lives in the store. Sparse boards keep them in a map and share
+    // one EmptyNode for all empty cells
+    private final GameNode[] views;
+    private final Map<Integer, GameNode> sparseViews;
+    private int[] queue; // work arrays of the light propagation
+    private int[] lost;
+    private final NodeIndex typeIndex; // cells of each node type
+    private int litBulbs = 0; // kept up to date by setCellLit()
     private boolean isRecalculating = false;
-    private Map<Position, Set<Side>> solutionConnectors = new HashMap<>();
-    private Set<Position> solutionNodes = new HashSet<>();
+    private boolean lightKnown = false; // set by the first recalculateLight(), placed nodes update the light after it
+    private boolean incrementalLight = true;
+    private int batchDepth = 0;
+    private final BitSet dirty = new BitSet(); // cells changed while a batch is open
+    private final List<IntConsumer> cellListeners = new ArrayList<>();
+    // saved solution: type and connectors of its nodes in a store of its own, cells listed for iteration
+    private BoardStore solution;
+    private int[] solutionCells = new int[0];
+    private int solutionSize = 0;
+    private final Set<Position> solutionNodes = new SolutionNodes();
 
     public Game(int rows, int cols) {
+        this(rows, cols, false);
+    }
+
+    /*
+     * A sparse game stores only the non-empty cells, its memory use grows with the number of nodes instead of
+     * with the size of the board. Empty cells are all represented by EmptyNode.SHARED.
+     */
+    public Game(int rows, int cols, boolean sparse) {
         if (rows <= 0 || cols <= 0) throw new IllegalArgumentException("Invalid dimensions");
         this.rows = rows;
         this.cols = cols;
-        this.board = new HashMap<>();
-
-        for (int r = 1; r <= rows; r++) {
-            for (int c = 1; c <= cols; c++) {
-                Position position = new Position(r, c);
-                board.put(position, new EmptyNode(position));
-            }
-        }
+        this.sparse = sparse;
+        this.store = sparse ? new SparseBoardStore(rows, cols) : new DenseBoardStore(rows, cols);
+        this.views = sparse ? null : new GameNode[store.size()];
+        this.sparseViews = sparse ? new HashMap<>() : null;
+        this.typeIndex = new NodeIndex(store.size(), !sparse);
     }
 
     public static Game create(int rows, int cols) {
         return new Game(rows, cols);
     }
 
+    public static Game createSparse(int rows, int cols) {
+        return new Game(rows, cols, true);
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
     public int rows() {
         return rows;
     }
@@ -44,38 +77,159 @@ public class Game implements ToolEnvironment, Observable.Observer {
         return cols;
     }
 
-    public Map<Position, GameNode> getBoard() {
-        return board;
+    public BoardStore getStore() {
+        return store;
+    }
+
+    /*
+     * 64-bit Zobrist hash of the node types and connectors of the whole board, for transposition tables, spotting
+     * repeated states and duplicate levels. Updated in O(1) by every turn and every placed node, light and the
+     * rotation counters are not part of it.
+     */
+    public long stateHash() {
+        return store.stateHash();
     }
 
+    // same hash computed from all the nodes, always equal to stateHash()
+    public long computeStateHash() {
+        long hash = 0;
+        for (int type : new int[] {BoardStore.TYPE_POWER, BoardStore.TYPE_BULB, BoardStore.TYPE_LINK}) {
+            for (int i = 0; i < typeIndex.size(type); i++) {
+                int cell = typeIndex.get(type, i);
+                hash ^= Zobrist.key(cell, store.type(cell), store.mask(cell));
+            }
+        }
+        return hash;
+    }
+
+    // all non-empty nodes in row-major order
+    public List<GameNode> nodes() {
+        int[] cells = new int[nodeCount()];
+        int count = 0;
+        for (int type : new int[] {BoardStore.TYPE_POWER, BoardStore.TYPE_BULB, BoardStore.TYPE_LINK}) {
+            for (int i = 0; i < typeIndex.size(type); i++) {
+                cells[count++] = typeIndex.get(type, i);
+            }
+        }
+        Arrays.sort(cells);
+        List<GameNode> nodes = new ArrayList<>(cells.length);
+        for (int cell : cells) {
+            nodes.add(view(cell));
+        }
+        return nodes;
+    }
+
+    // number of non-empty cells
+    public int nodeCount() {
+        return store.size() - typeIndex.size(BoardStore.TYPE_EMPTY);
+    }
 
     public GameNode node(Position p) {
-        return board.get(p);
+        if (!isValidPosition(p)) return null;
+        return view(store.index(p.row(), p.col()));
+    }
+
+    private GameNode view(int index) {
+        if (sparse && store.type(index) == BoardStore.TYPE_EMPTY) {
+            return EmptyNode.SHARED;
+        }
+        GameNode node = sparse ? sparseViews.get(index) : views[index];
+        if (node == null) {
+            Position position = Position.of(store.rowOf(index), store.colOf(index));
+            node = switch (store.type(index)) {
+                case BoardStore.TYPE_POWER -> new PowerNode(store, position);
+                case BoardStore.TYPE_BULB -> new BulbNode(store, position);
+                case BoardStore.TYPE_LINK -> new LinkNode(store, position);
+                default -> new EmptyNode(store, position);
+            };
+            node.addObserver(this);
+            if (sparse) {
+                sparseViews.put(index, node);
+            } else {
+                views[index] = node;
+            }
+        }
+        return node;
+    }
+
+    private GameNode putNode(Position position, int type, int mask) {
+        int index = store.index(position.row(), position.col());
+        setCell(index, type, mask);
+        return view(index);
+    }
+
+    /*
+     * Replaces the node of a cell. Once the light has been calculated, the cells fed through the old node are
+     * switched off and lit again the same way as after a turn, otherwise they would keep a feed that is gone.
+     */
+    private void setCell(int index, int type, int mask) {
+        GameNode old = sparse ? sparseViews.remove(index) : views[index];
+        if (old != null) {
+            old.removeObserver(this);
+            if (!sparse) views[index] = null;
+        }
+        boolean power = type == BoardStore.TYPE_POWER || store.type(index) == BoardStore.TYPE_POWER;
+        boolean incremental = lightKnown && incrementalLight && !power && hasPowerNode();
+        int lostCount = 0;
+        if (incremental) {
+            isRecalculating = true;
+            ensureWorkArrays();
+            lostCount = switchOffFrom(index); // with the old node still in place
+        } else {
+            setCellLit(index, false);
+        }
+        typeIndex.move(index, store.type(index), type);
+        store.set(index, type, mask);
+        if (incremental) {
+            lightAgain(lostCount);
+            isRecalculating = false;
+        } else if (lightKnown) {
+            recalculateLight(); // the power node itself was placed or replaced, or incremental light is off
+        }
+        cellChanged(index);
+    }
+
+    // the listener gets the store index of every node that turned or was placed or removed, also inside batches
+    public void addCellListener(IntConsumer listener) {
+        cellListeners.add(listener);
+    }
+
+    public void removeCellListener(IntConsumer listener) {
+        cellListeners.remove(listener);
+    }
+
+    private void cellChanged(int index) {
+        for (int i = 0; i < cellListeners.size(); i++) {
+            cellListeners.get(i).accept(index);
+        }
+    }
+
+    /*
+     * Places a node (one of the BoardStore.TYPE_*) without creating its view, for generators filling big boards.
+     * Same rules as the create methods, invalid nodes are not placed.
+     */
+    public void setNode(int row, int col, int type, int mask) {
+        if (row <= 0 || col <= 0 || row > rows || col > cols) return;
+        if (type == BoardStore.TYPE_POWER && hasPowerNode()) return;
+        int needed = type == BoardStore.TYPE_LINK ? 2 : type == BoardStore.TYPE_EMPTY ? 0 : 1;
+        if (Connectors.count(mask) < needed) return;
+        setCell(store.index(row, col), type, mask);
     }
 
     public GameNode createBulbNode(Position position, Side connectors) {
         if (!isValidPosition(position)) return null;
-        BulbNode node = new BulbNode(position, connectors);
-        node.addObserver(this);
-        board.put(position, node);
-        return node;
+        return putNode(position, BoardStore.TYPE_BULB, connectors.bit());
     }
 
     public GameNode createLinkNode(Position position, Side... connectors) {
         if (!isValidPosition(position) || connectors.length < 2) return null;
-        LinkNode node = new LinkNode(position, connectors);
-        node.addObserver(this);
-        board.put(position, node);
-        return node;
+        return putNode(position, BoardStore.TYPE_LINK, Side.maskOf(connectors));
     }
 
     public GameNode createPowerNode(Position position, Side... connectors) {
         if (!isValidPosition(position) || connectors.length < 1) return null;
         if (hasPowerNode()) return null; // Ensure only one PowerNode exists
-        PowerNode node = new PowerNode(position, connectors);
-        node.addObserver(this);
-        board.put(position, node);
-        return node;
+        return putNode(position, BoardStore.TYPE_POWER, Side.maskOf(connectors));
     }
 
     private boolean isValidPosition(Position p) {
@@ -83,171 +237,302 @@ public class Game implements ToolEnvironment, Observable.Observer {
     }
 
     private boolean hasPowerNode() {
-        return board.values().stream().anyMatch(GameNode::isPower);
+        return typeIndex.size(BoardStore.TYPE_POWER) > 0;
     }
 
-    @Override
-    public ToolField fieldAt(int row, int col) {
-        Position position = new Position(row, col);
-        if(!isValidPosition(position)) {
-            return null;
+    // cell of the power node, -1 when there is none
+    private int powerIndex() {
+        return hasPowerNode() ? typeIndex.get(BoardStore.TYPE_POWER, 0) : -1;
+    }
+
+    // nodes of one type (BoardStore.TYPE_*), taken from the live index instead of scanning the board
+    public List<GameNode> nodesOfType(int type) {
+        if (type < BoardStore.TYPE_EMPTY || type > BoardStore.TYPE_LINK) {
+            throw new IllegalArgumentException("Unknown node type " + type);
         }
-        return board.get(position); //GameNode must implement tool field
+        int count = typeIndex.size(type);
+        List<GameNode> nodes = new ArrayList<>(count);
+        if (type == BoardStore.TYPE_EMPTY && !typeIndex.listsEmpty()) {
+            // sparse board: the empty cells are the ones missing from the store, each gets its own positioned
+            // node instead of the shared one
+            for (int cell = 0; cell < store.size(); cell++) {
+                if (store.type(cell) == BoardStore.TYPE_EMPTY) {
+                    nodes.add(new EmptyNode(store, Position.of(store.rowOf(cell), store.colOf(cell))));
+                }
+            }
+            return nodes;
+        }
+        for (int i = 0; i < count; i++) {
+            nodes.add(view(typeIndex.get(type, i)));
+        }
+        return nodes;
     }
 
-    private Position getAdjacentPosition(Position p, Side s) {
-        int row = p.row();
-        int col = p.col();
-        switch (s){
-            case NORTH:
-                row --;
-                break;
-            case SOUTH:
-                row ++;
-                break;
-            case EAST:
-                col ++;
-                break;
-            case WEST:
-                col --;
-                break;
+    @Override
+    public ToolField fieldAt(int row, int col) {
+        if (row <= 0 || col <= 0 || row > rows || col > cols) {
+            return null;
         }
-        return new Position(row, col);
+        return view(store.index(row, col)); //GameNode must implement tool field
     }
 
-    private Side getOpposite(Side side) {
+    // index of the neighbouring cell on the given side, -1 when it is outside the board
+    private int neighbour(int index, Side side) {
+        int row = store.rowOf(index);
+        int col = store.colOf(index);
         return switch (side) {
-            case NORTH -> Side.SOUTH;
-            case SOUTH -> Side.NORTH;
-            case WEST -> Side.EAST;
-            case EAST -> Side.WEST;
-            default -> throw new IllegalArgumentException("Invalid side");
+            case NORTH -> row > 1 ? index - cols : -1;
+            case SOUTH -> row < rows ? index + cols : -1;
+            case WEST -> col > 1 ? index - 1 : -1;
+            case EAST -> col < cols ? index + 1 : -1;
         };
     }
 
-    private void performLightPropagation(){
-        GameNode powerNode = null;
-        // get powerNode
-        for(GameNode node : board.values()) {
-            if(node.isPower()){
-                powerNode = node;
-                powerNode.setLit(true);
-                break;
-            }
-        }
-        // check if exists
-        if (powerNode == null) {
-            return;
+    // true when the cell at index is lit, passes light on and is connected to side of its neighbour
+    private boolean feeds(int index, Side side) {
+        return store.lit(index) && store.type(index) != BoardStore.TYPE_BULB
+                && (store.mask(index) & Connectors.opposite(side.bit())) != 0;
+    }
+
+    // the work arrays are kept between recalculations, so propagation does not allocate once they exist
+    private void ensureWorkArrays() {
+        // only non-empty cells can be lit, so the arrays never need to be bigger than the number of nodes and the
+        // cell setCell() is about to fill
+        int needed = nodeCount() + 1;
+        if (queue == null || queue.length < needed) {
+            queue = new int[needed];
+            lost = new int[needed];
         }
-        // Logic for traversing
-        Queue<Map.Entry<GameNode, Side>> queue = new LinkedList<>();
-        Map<Position, Set<Side>> visited = new HashMap<>();
+    }
 
-        for (Side powerSide : powerNode.getConnectors()){
-            // Get all position that are adjacent to powerNode
-            Position adjacentPos = getAdjacentPosition(powerNode.getPosition(), powerSide);
-            if (!isValidPosition(adjacentPos)) {
+    /*
+     * Lights every unlit cell connected to current and puts it at the end of the queue. A lit flag doubles as the
+     * visited mark: once a cell is lit it has already been queued and spreads to all of its connectors, so it
+     * never has to be entered again from another side.
+     */
+    private int spreadLight(int current, int tail) {
+        if (store.type(current) == BoardStore.TYPE_BULB) { // bulb should be dead end
+            return tail;
+        }
+        int mask = store.mask(current);
+        for (int s = 0; s < Connectors.SIDES.length; s++) {
+            Side side = Connectors.SIDES[s];
+            if ((mask & side.bit()) == 0) {
                 continue;
             }
-            GameNode adjacentNode = board.get(adjacentPos);
-            if(adjacentNode == null) {
+            int next = neighbour(current, side);
+            if (next < 0 || store.lit(next) || (store.mask(next) & Connectors.opposite(side.bit())) == 0) {
                 continue;
             }
-            // get opposite side of connecting node
-            Side requiredSide = getOpposite(powerSide);
-            if(adjacentNode.containsConnector(requiredSide)){
-                queue.add(new AbstractMap.SimpleEntry<>(adjacentNode, requiredSide));
-                visited.computeIfAbsent(adjacentPos, k -> new HashSet<>()).add(requiredSide);
-            }
+            setCellLit(next, true);
+            store.setFeed(next, (s + 2) % 4); // fed from the opposite side
+            queue[tail++] = next;
         }
-        // traverse queue
-        while (!queue.isEmpty()) {
-            Map.Entry<GameNode, Side> entry = queue.poll();
-            GameNode currentNode = entry.getKey();
-            Side incomingSide = entry.getValue();
+        return tail;
+    }
 
-            // Validate connection before lighting
-            if (!currentNode.containsConnector(incomingSide)) {
-                continue; // Skip if connector mismatch
-            }
+    private void performLightPropagation(){
+        // check if powerNode exists
+        int powerIndex = powerIndex();
+        if (powerIndex < 0) {
+            return;
+        }
+        ensureWorkArrays();
+        setCellLit(powerIndex, true);
+        store.setFeed(powerIndex, BoardStore.FEED_SOURCE);
+        // every cell is queued at most once, so the queue never wraps around
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = powerIndex;
+        while (head < tail) {
+            tail = spreadLight(queue[head++], tail);
+        }
+    }
 
-            // light up
-            currentNode.setLit(true);
+    public void recalculateLight(){
+        isRecalculating = true;
+        lightKnown = true;
+        store.clearLit();
+        litBulbs = 0;
+        performLightPropagation();
+        isRecalculating = false;
+    }
 
-            if(currentNode.isBulb()){ // bulb should be dead end
-                continue;
-            }
-            for(Side connector : currentNode.getConnectors()){
-                if(connector == incomingSide){
-                    continue;
-                }
+    /*
+     * Updates the light after the connectors of a single cell changed. Only the cells that were fed through the
+     * changed cell are switched off, then light is spread again from their lit neighbours and from the changed
+     * cell itself. Gives the same result as recalculateLight().
+     */
+    private void recalculateLight(int changed) {
+        int powerIndex = powerIndex();
+        if (powerIndex < 0 || changed == powerIndex) {
+            recalculateLight();
+            return;
+        }
+        isRecalculating = true;
+        ensureWorkArrays();
+        lightAgain(switchOffFrom(changed));
+        isRecalculating = false;
+    }
 
-                Position nextPos = getAdjacentPosition(currentNode.getPosition(), connector);
-                if(!isValidPosition(nextPos)) {
-                    continue;
-                }
-                GameNode nextNode = board.get(nextPos);
-                if(nextNode == null) {
-                    continue;
+    // switches off everything that got its power through the changed cell, returns the number of lost cells
+    private int switchOffFrom(int changed) {
+        // each cell has a single feeder so it is added to the lost cells at most once
+        int lostCount = 0;
+        lost[lostCount++] = changed;
+        for (int i = 0; i < lostCount; i++) {
+            int current = lost[i];
+            if (store.lit(current)) {
+                for (int s = 0; s < Connectors.SIDES.length; s++) {
+                    int next = neighbour(current, Connectors.SIDES[s]);
+                    if (next >= 0 && store.feed(next) == (s + 2) % 4) {
+                        lost[lostCount++] = next;
+                    }
                 }
+            }
+            setCellLit(current, false);
+            store.setFeed(current, BoardStore.FEED_NONE);
+        }
+        return lostCount;
+    }
 
-                Side requiredNextSide = getOpposite(connector);
-                if(!nextNode.containsConnector(requiredNextSide)){
-                    continue;
-                }
-                Set<Side> visitedSides = visited.getOrDefault(nextPos, new HashSet<>());
-                if(visitedSides.contains(requiredNextSide)){
-                    continue;
+    // lights the lost cells again from any lit neighbour that still reaches them
+    private void lightAgain(int lostCount) {
+        for (int i = 0; i < lostCount; i++) {
+            int cell = lost[i];
+            if (store.lit(cell)) {
+                continue; // already lit again while spreading from an earlier cell
+            }
+            int cellMask = store.mask(cell);
+            for (int s = 0; s < Connectors.SIDES.length; s++) {
+                Side side = Connectors.SIDES[s];
+                int from = neighbour(cell, side);
+                if ((cellMask & side.bit()) != 0 && from >= 0 && feeds(from, side)) {
+                    setCellLit(cell, true);
+                    store.setFeed(cell, s);
+                    int head = 0;
+                    int tail = 0;
+                    queue[tail++] = cell;
+                    while (head < tail) {
+                        tail = spreadLight(queue[head++], tail);
+                    }
+                    break;
                 }
-                queue.add(new AbstractMap.SimpleEntry<>(nextNode, requiredNextSide));
-                visitedSides.add(requiredNextSide);
-                visited.put(nextPos, visitedSides);
             }
         }
     }
 
-    public void recalculateLight(){
-        isRecalculating = true;
-        for(GameNode node : board.values()) {
-            node.setLit(false);
+    public boolean isIncrementalLight() {
+        return incrementalLight;
+    }
+
+    public void setIncrementalLight(boolean incrementalLight) {
+        this.incrementalLight = incrementalLight;
+    }
+
+    /*
+     * Starts a batch of changes. Until the matching commitBatch() the turned nodes are only remembered and the
+     * light is recalculated once at the end. Batches can be nested, only the outermost commit recalculates.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    public void commitBatch() {
+        if (batchDepth == 0) throw new IllegalStateException("commitBatch() without beginBatch()");
+        if (--batchDepth > 0 || dirty.isEmpty()) {
+            return;
+        }
+        // a few changed cells are cheaper to handle one by one than to recalculate the whole board
+        if (incrementalLight && dirty.cardinality() <= INCREMENTAL_BATCH_LIMIT) {
+            for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+                nodeChanged(index);
+            }
+        } else {
+            recalculateLight();
+        }
+        dirty.clear();
+    }
+
+    public boolean isInBatch() {
+        return batchDepth > 0;
+    }
+
+    // turns every node in the list once (like a player would) and recalculates the light only once
+    public void applyMoves(List<Position> moves) {
+        beginBatch();
+        try {
+            for (Position move : moves) {
+                GameNode node = node(move);
+                if (node != null) node.turn();
+            }
+        } finally {
+            commitBatch();
         }
-        performLightPropagation();
-        isRecalculating = false;
     }
 
     @Override
     public void update(Observable observable) {
         // ignore recalculations calls during
-        if(!isRecalculating) {
+        if(isRecalculating) {
+            return;
+        }
+        if (observable instanceof GameNode node) cellChanged(node.getIndex());
+        if (batchDepth > 0) {
+            if (observable instanceof GameNode node) {
+                dirty.set(node.getIndex());
+            } else {
+                dirty.set(0, store.size());
+            }
+            return;
+        }
+        if (incrementalLight && observable instanceof GameNode node) {
+            nodeChanged(node.getIndex());
+        } else {
             recalculateLight(); // Recalculate light when any node changes
         }
     }
 
-    public boolean isWon() {
-        long totalBulbs = 0;
-        long litBulbs = 0;
-        
-        for (int r = 1; r <= rows; r++) {
-            for (int c = 1; c <= cols; c++) {
-                Position pos = new Position(r, c);
-                GameNode node = node(pos);
-                if (node.isBulb()) {
-                    totalBulbs++;
-                    if (node.light()) {
-                        litBulbs++;
-                    }
-                }
-            }
+    private void nodeChanged(int index) {
+        // a lit flag changed from outside the propagation cannot be trusted, start over in that case
+        if (store.lit(index) == (store.feed(index) != BoardStore.FEED_NONE)) {
+            recalculateLight(index);
+        } else {
+            recalculateLight();
+        }
+    }
+
+    // every change of a lit flag goes through here, so the lit bulb counter stays exact
+    private void setCellLit(int index, boolean lit) {
+        if (store.lit(index) == lit) {
+            return;
+        }
+        store.setLit(index, lit);
+        if (store.type(index) == BoardStore.TYPE_BULB) {
+            litBulbs += lit ? 1 : -1;
         }
+    }
+
+    public boolean isWon() {
+        int totalBulbs = totalBulbs();
         return totalBulbs > 0 && litBulbs == totalBulbs;
     }
 
+    // progress of the level, number of lit bulbs out of totalBulbs()
+    public int litBulbs() {
+        return litBulbs;
+    }
+
+    public int totalBulbs() {
+        return typeIndex.size(BoardStore.TYPE_BULB);
+    }
+
     public void init(){
-        long powerNodes = board.values().stream().filter(GameNode::isPower).count();
+        int powerNodes = typeIndex.size(BoardStore.TYPE_POWER);
         if (powerNodes != 1){ 
             // throw new IllegalArgumentException("Exactly one power node is required");
         }
-        long bulbNodes = board.values().stream().filter(GameNode::isBulb).count();
+        int bulbNodes = typeIndex.size(BoardStore.TYPE_BULB);
         if (bulbNodes < 1){
             // throw new IllegalArgumentException("At least one BulbNode is required");
         }
@@ -255,47 +540,145 @@ public class Game implements ToolEnvironment, Observable.Observer {
     }
 
     public void saveSolutionState(){
-        solutionConnectors.clear();
-        solutionNodes.clear();
-
-        for(Map.Entry<Position, GameNode> entry : board.entrySet()) {
-            Position pos = entry.getKey();
-            GameNode node = entry.getValue();
+        clearSolution();
+        for (int type = BoardStore.TYPE_POWER; type <= BoardStore.TYPE_LINK; type++) {
+            for (int i = 0, count = typeIndex.size(type); i < count; i++) {
+                int index = typeIndex.get(type, i);
+                addSolutionNode(index, type, store.mask(index));
+            }
+        }
+    }
 
-            if (node.isPower() || node.isBulb() || node.isLink()) {
-                solutionNodes.add(pos);
-                solutionConnectors.put(pos, new HashSet<>(node.getConnectors()));
+    // solution found by the Solver, for levels whose original layout is not available
+    public void saveSolutionState(Solver.Solution solution) {
+        clearSolution();
+        for (int type = BoardStore.TYPE_POWER; type <= BoardStore.TYPE_LINK; type++) {
+            for (int i = 0, count = typeIndex.size(type); i < count; i++) {
+                int index = typeIndex.get(type, i);
+                Position pos = Position.of(store.rowOf(index), store.colOf(index));
+                if (solution.isActive(pos)) addSolutionNode(index, type, Side.maskOf(solution.connectors(pos)));
             }
         }
     }
 
     public void copySolutionState(Game other) {
         if (other == null) return;
-        this.solutionNodes = new HashSet<>(other.getSolutionNodes());
-        this.solutionConnectors = new HashMap<>();
-        for (Position pos : other.getSolutionNodes()) {
-            Set<Side> connectors = other.getSolutionConnectors(pos);
-            if (connectors != null) {
-                this.solutionConnectors.put(pos, new HashSet<>(connectors));
-            }
+        clearSolution();
+        for (int i = 0; i < other.solutionSize; i++) {
+            int cell = other.solutionCells[i];
+            int row = other.solution.rowOf(cell);
+            int col = other.solution.colOf(cell);
+            if (row > rows || col > cols) continue;
+            addSolutionNode(store.index(row, col), other.solution.type(cell), other.solution.mask(cell));
+        }
+    }
+
+    private void clearSolution() {
+        solution = sparse ? new SparseBoardStore(rows, cols) : new DenseBoardStore(rows, cols);
+        solutionSize = 0;
+    }
+
+    private void addSolutionNode(int index, int type, int mask) {
+        if (solutionSize == solutionCells.length) {
+            solutionCells = Arrays.copyOf(solutionCells, Math.max(16, solutionSize * 2));
         }
+        solutionCells[solutionSize++] = index;
+        solution.set(index, type, mask);
     }
 
     public Set<Side> getSolutionConnectors(Position pos) {
-        return solutionConnectors.get(pos);
+        if (!solutionNodes.contains(pos)) return null;
+        return Side.fromMask(solution.mask(solution.index(pos.row(), pos.col())));
+    }
+
+    // fewest clockwise turns that bring the node into its solution state, -1 for nodes outside of the solution
+    public int turnsToSolution(Position pos) {
+        if (!solutionNodes.contains(pos)) return -1;
+        int index = store.index(pos.row(), pos.col());
+        return Connectors.turnsBetween(store.mask(index), solution.mask(solution.index(pos.row(), pos.col())));
     }
 
     public Set<Position> getSolutionNodes() {
         return solutionNodes;
     }
 
+    // read-only view of the saved solution nodes, no set of positions is built for big boards
+    private final class SolutionNodes extends AbstractSet<Position> {
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Position p && solution != null && isValidPosition(p)
+                    && solution.type(solution.index(p.row(), p.col())) != BoardStore.TYPE_EMPTY;
+        }
+
+        @Override
+        public Iterator<Position> iterator() {
+            return new Iterator<>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < solutionSize;
+                }
+
+                @Override
+                public Position next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    int index = solutionCells[next++];
+                    return Position.of(solution.rowOf(index), solution.colOf(index));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return solutionSize;
+        }
+    }
+
+    public int emptyCount() {
+        return typeIndex.size(BoardStore.TYPE_EMPTY);
+    }
+
     public Set<Position> findEmptyNodes() {
-        Set<Position> emptyNodes = new HashSet<>();
-        for (Map.Entry<Position, GameNode> entry : board.entrySet()) {
-            if (entry.getValue().isEmpty()) {
-                emptyNodes.add(entry.getKey());
+        int count = emptyCount();
+        Set<Position> emptyNodes = new HashSet<>(count * 2);
+        if (typeIndex.listsEmpty()) {
+            for (int i = 0; i < count; i++) {
+                int cell = typeIndex.get(BoardStore.TYPE_EMPTY, i);
+                emptyNodes.add(Position.of(store.rowOf(cell), store.colOf(cell)));
+            }
+        } else {
+            // sparse board: the empty cells are the ones missing from the store
+            for (int cell = 0; cell < store.size(); cell++) {
+                if (store.type(cell) == BoardStore.TYPE_EMPTY) {
+                    emptyNodes.add(Position.of(store.rowOf(cell), store.colOf(cell)));
+                }
             }
         }
         return emptyNodes;
     }
+
+    /*
+     * Picks count different empty cells in random order. When only a few of many empty cells are wanted, random
+     * cells are drawn until enough empty ones are found, so the empty cells never have to be listed.
+     */
+    public List<Position> randomEmptyNodes(int count, RandomGenerator random) {
+        int emptyCount = emptyCount();
+        count = Math.min(count, emptyCount);
+        if (count * 4 <= emptyCount) {
+            Set<Position> picked = new LinkedHashSet<>();
+            while (picked.size() < count) {
+                int cell = random.nextInt(store.size());
+                if (store.type(cell) == BoardStore.TYPE_EMPTY) {
+                    picked.add(Position.of(store.rowOf(cell), store.colOf(cell)));
+                }
+            }
+            return new ArrayList<>(picked);
+        }
+        List<Position> emptyNodes = new ArrayList<>(findEmptyNodes());
+        for (int i = 0; i < count; i++) { // only the picked part of the list is shuffled
+            Collections.swap(emptyNodes, i, i + random.nextInt(emptyNodes.size() - i));
+        }
+        return emptyNodes.subList(0, count);
+    }
 }
\ No newline at end of file
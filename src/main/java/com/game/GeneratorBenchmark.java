@@ -0,0 +1,123 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Measures what generating levels with a unique solution costs. Run without the GUI:
+ *   java -cp target/classes com.game.GeneratorBenchmark [levels per size]
+ * For every size and difficulty the same number of levels is generated with and without
+ * LevelGenerator.setUniqueSolution(true), the table shows the time per level and how many levels were unique.
+ * The second table times the spanning tree alone and a whole level on big boards (needs -Xmx2g for 2000x2000).
+ * The last two show how the Solver.Stats.score() of plain levels is spread, and what generating Hard levels in a
+ * score band with LevelGenerator.setScoreBand() costs: time per level, candidates per level and candidates per second
+ * over all cores, and how many levels really landed in the band.
+ */
+
+import com.ui.Difficulty;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class GeneratorBenchmark {
+    private static final int[] SIZES = {4, 6, 8, 12, 20};
+    private static final int[] BIG_SIZES = {100, 500, 1000, 2000};
+    private static final int BIG_RUNS = 5;
+    private static final int[] SCORE_SIZES = {8, 12, 20};
+    private static final double[][] BANDS = {{0, 10}, {10, 40}, {40, 70}, {70, 100}};
+
+    public static void main(String[] args) {
+        int levels = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        LevelGenerator plain = new LevelGenerator();
+        LevelGenerator unique = new LevelGenerator();
+        unique.setUniqueSolution(true);
+        // warm up the JIT so the first size is not measured in the interpreter
+        for (int i = 0; i < 200; i++) {
+            unique.generateLevel(6, 6, Difficulty.Medium);
+        }
+        System.out.println("size   difficulty   plain ms  unique ms   extra  plain unique  unique unique");
+        for (int n : SIZES) {
+            for (Difficulty difficulty : Difficulty.values()) {
+                Result before = run(plain, n, difficulty, levels);
+                Result after = run(unique, n, difficulty, levels);
+                System.out.printf("%-6s %-10s %9.3f  %9.3f  %5.1fx  %8d/%-3d  %9d/%-3d%n", n + "x" + n, difficulty,
+                        before.millis, after.millis, after.millis / before.millis, before.unique, levels,
+                        after.unique, levels);
+            }
+        }
+
+        System.out.println();
+        System.out.println("size         tree ms   level ms");
+        Random random = new Random(42);
+        for (int n : BIG_SIZES) {
+            long tree = 0;
+            long level = 0;
+            for (int i = 0; i < BIG_RUNS; i++) {
+                long start = System.nanoTime();
+                LevelGenerator.spanningTree(n, n, random.nextInt(n * n), n * n * 3 / 5, random);
+                long middle = System.nanoTime();
+                plain.generateLevel(n, n, Difficulty.Easy);
+                tree += middle - start;
+                level += System.nanoTime() - middle;
+            }
+            System.out.printf("%-11s %8.1f  %9.1f%n", n + "x" + n, tree / 1e6 / BIG_RUNS, level / 1e6 / BIG_RUNS);
+        }
+
+        System.out.println();
+        System.out.println("size   difficulty  levels/s    min    p25 median    p75    max");
+        for (int n : SCORE_SIZES) {
+            for (Difficulty difficulty : Difficulty.values()) {
+                double[] scores = new double[levels];
+                long start = System.nanoTime();
+                for (int i = 0; i < levels; i++) {
+                    scores[i] = score(plain.generateLevel(n, n, difficulty));
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Arrays.sort(scores);
+                System.out.printf("%-6s %-10s %9.1f  %5.1f  %5.1f  %5.1f  %5.1f  %5.1f%n", n + "x" + n, difficulty,
+                        levels / seconds, scores[0], scores[levels / 4], scores[levels / 2], scores[levels * 3 / 4],
+                        scores[levels - 1]);
+            }
+        }
+
+        System.out.println();
+        System.out.println("size   band        ms/level  candidates/level  candidates/s  in band");
+        LevelGenerator targeted = new LevelGenerator(new Random(42));
+        for (int n : SCORE_SIZES) {
+            for (double[] band : BANDS) {
+                targeted.setScoreBand(band[0], band[1]);
+                long candidates = 0;
+                int hits = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < levels; i++) {
+                    double score = score(targeted.generateLevel(n, n, Difficulty.Hard));
+                    candidates += targeted.getCandidates();
+                    if (score >= band[0] && score <= band[1]) hits++;
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-6s %-10s %9.1f  %16.1f  %12.0f  %4d/%-3d%n", n + "x" + n,
+                        (int) band[0] + "-" + (int) band[1], seconds * 1e3 / levels, (double) candidates / levels,
+                        candidates / seconds, hits, levels);
+            }
+        }
+    }
+
+    private static double score(Game game) {
+        Solver solver = new Solver(game);
+        solver.solve();
+        return solver.stats().score();
+    }
+
+    private record Result(double millis, int unique) {
+    }
+
+    // average time per level and the number of levels with exactly one solution
+    private static Result run(LevelGenerator generator, int n, Difficulty difficulty, int levels) {
+        long nanos = 0;
+        int unique = 0;
+        for (int i = 0; i < levels; i++) {
+            long start = System.nanoTime();
+            Game game = generator.generateLevel(n, n, difficulty);
+            nanos += System.nanoTime() - start;
+            if (new Solver(game).countSolutions(2) == 1) unique++;
+        }
+        return new Result(nanos / 1e6 / levels, unique);
+    }
+}
@@ -0,0 +1,114 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Hints worked out by deduction instead of read from the saved solution, so they also work for levels without one.
+ * The rotations the solution needs (border cells, cells whose neighbours are already fixed, bridges the light has
+ * to cross, ...) are found once by the propagation of the Solver, without any search, see Solver.forcedMasks() for
+ * what they promise on levels with more than one winning rotation. After that the engine only follows the turns:
+ * the forced nodes that are not in their forced state yet are kept in a set that one turn changes by at most one
+ * cell, so nextMove() is a lookup even on big boards.
+ */
+
+import com.common.BoardStore;
+import com.common.Connectors;
+import com.common.IntIntMap;
+import com.common.Position;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class HintEngine {
+    private final Game game;
+    private final BoardStore store;
+    private final IntConsumer listener = this::cellChanged;
+    private byte[] types; // node types the forced masks were worked out for
+    private byte[] forced; // see Solver.forcedMasks()
+    private int forcedCount;
+    private int[] pending = new int[16]; // forced cells that are not in their forced state
+    private int pendingSize;
+    private IntIntMap slots = new IntIntMap(); // position of a cell in pending
+    private boolean stale; // a node was placed or removed, the deduction starts over on the next question
+
+    public HintEngine(Game game) {
+        this.game = game;
+        this.store = game.getStore();
+        game.addCellListener(listener);
+        rebuild();
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    // stops following the game
+    public void detach() {
+        game.removeCellListener(listener);
+    }
+
+    // a forced node that is not in its forced state yet, null when there is none (the rest needs a guess or is done)
+    public Position nextMove() {
+        if (stale) rebuild();
+        if (pendingSize == 0) return null;
+        int cell = pending[pendingSize - 1];
+        return Position.of(store.rowOf(cell), store.colOf(cell));
+    }
+
+    // clockwise turns that bring the node into its forced state, -1 when the node is not forced
+    public int turnsNeeded(Position pos) {
+        if (stale) rebuild();
+        if (pos.row() < 1 || pos.col() < 1 || pos.row() > game.rows() || pos.col() > game.cols()) return -1;
+        int cell = store.index(pos.row(), pos.col());
+        return forced[cell] < 0 ? -1 : Connectors.turnsBetween(store.mask(cell), forced[cell]);
+    }
+
+    // nodes whose rotation the deduction fixed
+    public int forcedCount() {
+        if (stale) rebuild();
+        return forcedCount;
+    }
+
+    // forced nodes still waiting for their turns
+    public int pendingCount() {
+        if (stale) rebuild();
+        return pendingSize;
+    }
+
+    private void cellChanged(int cell) {
+        if (stale) return;
+        if (store.type(cell) != types[cell]) {
+            stale = true;
+            return;
+        }
+        update(cell);
+    }
+
+    // moves the cell in or out of pending
+    private void update(int cell) {
+        boolean wrong = forced[cell] >= 0 && store.mask(cell) != forced[cell];
+        int slot = slots.get(cell, -1);
+        if (wrong && slot < 0) {
+            if (pendingSize == pending.length) pending = Arrays.copyOf(pending, pendingSize * 2);
+            slots.put(cell, pendingSize);
+            pending[pendingSize++] = cell;
+        } else if (!wrong && slot >= 0) {
+            int last = pending[--pendingSize];
+            pending[slot] = last;
+            slots.put(last, slot);
+            slots.remove(cell);
+        }
+    }
+
+    private void rebuild() {
+        forced = new Solver(game).forcedMasks();
+        types = new byte[store.size()];
+        forcedCount = 0;
+        pendingSize = 0;
+        slots = new IntIntMap();
+        for (int cell = 0; cell < types.length; cell++) {
+            types[cell] = (byte) store.type(cell);
+            if (forced[cell] >= 0) forcedCount++;
+            update(cell);
+        }
+        stale = false;
+    }
+}
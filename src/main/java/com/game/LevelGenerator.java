@@ -12,257 +12,479 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class LevelGenerator {
-    private final Random random = new Random();
+    private static final int MAX_TREES = 50; // trees tried for a level with a unique solution
+    private static final int SHAPE_TRIES = 4; // shapes tried for one fake before its cell stays empty
+    private static final int FAKE_CHECK_LIMIT = 64; // fakes the check of one placement may walk, past it it is refused
+    private static final long UNIQUE_DECISION_LIMIT = 20_000; // for one check
+    // work of all checks for one level, counted as (decisions + 1) * nodes so the same seed gives the same level
+    // on any machine, about a second
+    private static final long UNIQUE_WORK_BUDGET = 8_000_000;
+    private static final byte FREE = 0; // cell states of spanningTree()
+    private static final byte FRONTIER = 1;
+    private static final byte TREE = 2;
+    private static final int[] ROW_STEP = {-1, 0, 1, 0}; // same order as Connectors.SIDES
+    private static final int[] COL_STEP = {0, 1, 0, -1};
+    // candidates of a targeted level built in parallel at once, fixed so a seed picks the same level on any machine
+    private static final int CANDIDATE_WAVE = 16;
+    private static final int MAX_CANDIDATES = 256;
+    private static final long SCORE_DECISION_LIMIT = 4096; // the score does not grow with more search
+    private final RandomGenerator random;
+    private Path layoutDir = Paths.get("data", "level_layout", "random");
+    private boolean uniqueSolution = false;
+    private long checkWork; // spent by the uniqueness checks of the current level
+    private boolean lastUnique; // the last level passed the uniqueness check
+    private boolean targeted = false; // score band set
+    private double minScore;
+    private double maxScore;
+    private int candidates; // built for the last targeted level
+    // work area of realNodesBehind(), reused for every placement: steps as index * 4 + side light leaves through,
+    // and the index * 4 + side light entered a fake through, each walk sees at most FAKE_CHECK_LIMIT + 1 fakes
+    private final int[] walkQueue = new int[3 * FAKE_CHECK_LIMIT + 4];
+    private final int[] walkEntered = new int[FAKE_CHECK_LIMIT + 1];
+    private final BitSet walkSeen = new BitSet();
+
+    public LevelGenerator() {
+        this(new Random());
+    }
 
-    public Game generateLevel(int rows, int cols, Difficulty difficulty, int levelNumber) {
-        Game game = new Game(rows, cols);
-        Position startPos = randomPosition(rows, cols);
-        Side startDir = findValidDirection(startPos, game);
-        game.createPowerNode(startPos, startDir);
+    // all random choices come from the given generator, the same seed gives the same level
+    public LevelGenerator(RandomGenerator random) {
+        this.random = random;
+    }
 
-        Set<Position> visited = new HashSet<>();
-        visited.add(startPos);
+    public Path getLayoutDir() {
+        return layoutDir;
+    }
 
-        Position firstLinkPos = getAdjacent(startPos, startDir);
-        if (!isValid(firstLinkPos, game)) {
-            throw new IllegalStateException("No valid starting position from PowerNode");
-        }
+    // directory generateLevel() saves the layouts to, data/level_layout/random by default
+    public void setLayoutDir(Path layoutDir) {
+        this.layoutDir = layoutDir;
+    }
 
-        Map<Position, Position> parentMap = new HashMap<>();
-        Map<Position, List<Position>> childrenMap = new HashMap<>();
-        parentMap.put(startPos, null);
-        parentMap.put(firstLinkPos, startPos);
-        childrenMap.computeIfAbsent(startPos, k -> new ArrayList<>()).add(firstLinkPos);
+    public boolean isUniqueSolution() {
+        return uniqueSolution;
+    }
 
-        Side incoming = getOpposite(startDir);
-        int depth = Math.max(rows, cols);
+    /*
+     * Generate only levels with exactly one solution, so the hints never mark a correct looking node red. Trees
+     * with symmetric choices are grown again, the fakes never add a solution (see isSafeFake()). The count comes
+     * from Solver.countSolutions(), which is only exact because the solution is a tree of whole connectors. Gives
+     * up after MAX_TREES trees or when the checks used up their budget and returns the last level.
+     */
+    public void setUniqueSolution(boolean uniqueSolution) {
+        this.uniqueSolution = uniqueSolution;
+    }
 
-        growTree(game, firstLinkPos, startPos, incoming, visited, 0, depth, parentMap, childrenMap);
+    public boolean isTargeted() {
+        return targeted;
+    }
 
-        // Remove unnecessary connectors from LinkNodes
-        for (Position pos : new HashSet<>(parentMap.keySet())) {
-            GameNode node = game.node(pos);
-            if (node != null && node.isLink()) {
-                Set<Side> usedDirs = new HashSet<>();
+    public double getMinScore() {
+        return minScore;
+    }
 
-                // Add parent direction
-                Position parent = parentMap.get(pos);
-                if (parent != null) {
-                    usedDirs.add(getDirection(pos, parent));
-                }
+    public double getMaxScore() {
+        return maxScore;
+    }
 
-                // Add child directions
-                List<Position> children = childrenMap.get(pos);
-                if (children != null) {
-                    for (Position child : children) {
-                        usedDirs.add(getDirection(pos, child));
-                    }
-                }
+    /*
+     * Generate only levels whose Solver.Stats.score() is between min and max. The difficulty still decides the
+     * fakes, the band picks how hard the level is to solve. Candidates are generated in parallel until one of them
+     * lands in the band, after MAX_CANDIDATES the closest one is returned.
+     */
+    public void setScoreBand(double minScore, double maxScore) {
+        this.targeted = true;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
+    }
 
-                // Reset connectors to only used directions
-                LinkNode linkNode = (LinkNode) node;
-                linkNode.removeAllConnectors();
-                for (Side dir : usedDirs) {
-                    linkNode.addConnector(dir);
-                }
-            }
-        }
+    public void clearScoreBand() {
+        this.targeted = false;
+    }
 
-        // Save pre-scrambled state for hinting
-        game.saveSolutionState();
-        saveOriginalLayout(game, levelNumber);
-        scrambleLinks(game);
+    // candidates generated for the last level with a score band
+    public int getCandidates() {
+        return candidates;
+    }
 
-        if (difficulty != Difficulty.Easy){
-            addFakesNodes(game, difficulty);
+    // the last level passed the unique solution check, false when it was not checked or the check gave up
+    public boolean isLastUnique() {
+        return lastUnique;
+    }
+
+    public Game generateLevel(int rows, int cols, Difficulty difficulty, int levelNumber) {
+        if (targeted) {
+            Game game = targetedLevel(rows, cols, difficulty);
+            saveLayout(layoutLines(game), levelNumber);
+            return game;
         }
+        Game game = buildLevel(rows, cols, difficulty);
+        saveOriginalLayout(game, levelNumber);
+        scrambleLinks(game, random);
         game.init();
         return game;
     }
 
+    // same level without saving its layout, for tools and benchmarks
+    public Game generateLevel(int rows, int cols, Difficulty difficulty) {
+        if (targeted) return targetedLevel(rows, cols, difficulty);
+        Game game = buildLevel(rows, cols, difficulty);
+        scrambleLinks(game, random);
+        game.init();
+        return game;
+    }
 
-    private Side findValidDirection(Position pos, Game game) {
-        List<Side> dirs = new ArrayList<>(Arrays.asList(Side.values()));
-        Collections.shuffle(dirs);
-        for (Side dir : dirs) {
-            Position next = getAdjacent(pos, dir);
-            if (isValid(next, game)) {
-                return dir;
-            }
-        }
-        throw new IllegalStateException("No valid direction found for PowerNode");
+    private record Candidate(Game game, double score, boolean unique) {
     }
 
-    private void growTree(Game game, Position currentPos, Position parentPos, Side entryDir,
-                          Set<Position> visited, int depth, int maxDepth,
-                          Map<Position, Position> parentMap, Map<Position, List<Position>> childrenMap) {
-        if (depth >= maxDepth) {
-            game.createBulbNode(currentPos, entryDir);
-            return;
+    // scrambled level in the score band, or the closest one found
+    private Game targetedLevel(int rows, int cols, Difficulty difficulty) {
+        Candidate closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        candidates = 0;
+        while (candidates < MAX_CANDIDATES) {
+            // every candidate has its own generator split in order, the threads do not change the levels
+            RandomGenerator[] randoms = new RandomGenerator[CANDIDATE_WAVE];
+            for (int i = 0; i < randoms.length; i++) {
+                randoms[i] = split();
+            }
+            Candidate[] wave = IntStream.range(0, randoms.length).parallel()
+                    .mapToObj(i -> candidate(rows, cols, difficulty, randoms[i]))
+                    .toArray(Candidate[]::new);
+            candidates += wave.length;
+            for (Candidate candidate : wave) {
+                double distance = Math.max(minScore - candidate.score(), candidate.score() - maxScore);
+                if (distance <= 0) {
+                    lastUnique = candidate.unique();
+                    return candidate.game();
+                }
+                if (distance < closestDistance) {
+                    closest = candidate;
+                    closestDistance = distance;
+                }
+            }
         }
+        lastUnique = closest.unique();
+        return closest.game();
+    }
 
-        List<Side> directions = new ArrayList<>(Arrays.asList(Side.values()));
-        directions.remove(getOpposite(entryDir)); // prevent backtracking
-        Collections.shuffle(directions);
+    private Candidate candidate(int rows, int cols, Difficulty difficulty, RandomGenerator random) {
+        LevelGenerator generator = new LevelGenerator(random);
+        generator.setUniqueSolution(uniqueSolution);
+        Game game = generator.generateLevel(rows, cols, difficulty);
+        Solver solver = new Solver(game);
+        solver.setDecisionLimit(SCORE_DECISION_LIMIT);
+        solver.solve();
+        return new Candidate(game, solver.stats().score(), generator.isLastUnique());
+    }
 
-        List<Side> connectedDirs = new ArrayList<>();
-        connectedDirs.add(entryDir); // always connect to parent
+    private RandomGenerator split() {
+        if (random instanceof RandomGenerator.SplittableGenerator splittable) return splittable.split();
+        return new SplittableRandom(random.nextLong());
+    }
 
-        List<Side> outgoingDirs = new ArrayList<>();
+    // solved level with fakes, not scrambled yet
+    private Game buildLevel(int rows, int cols, Difficulty difficulty) {
+        checkWork = 0;
+        for (int tree = 1; ; tree++) {
+            boolean last = !uniqueSolution || tree == MAX_TREES;
+            Game game = growLevel(rows, cols, difficulty);
+            // the fakes keep the solutions of the tree, only the tree is checked
+            boolean checked = !last && checkWork < UNIQUE_WORK_BUDGET;
+            if (checked && !hasOneSolution(game)) continue;
+            lastUnique = checked;
+            if (difficulty != Difficulty.Easy) placeFakes(game, difficulty);
+            return game;
+        }
+    }
 
-        for (Side dir : directions) {
-            Position next = getAdjacent(currentPos, dir);
-            if (!isValid(next, game) || visited.contains(next)) continue;
+    // false also when the check gave up
+    private boolean hasOneSolution(Game game) {
+        Solver solver = new Solver(game);
+        solver.setDecisionLimit(UNIQUE_DECISION_LIMIT);
+        int solutions = solver.countSolutions(2);
+        checkWork += (solver.stats().decisions() + 1) * solver.stats().nodes();
+        return solutions == 1;
+    }
 
-            outgoingDirs.add(dir);
-            connectedDirs.add(dir);
+    // tree of links from the power node, the solution state is saved before any fakes are added
+    private Game growLevel(int rows, int cols, Difficulty difficulty) {
+        Game game = new Game(rows, cols);
+        int size = rows * cols;
+        int power = random.nextInt(size);
+        int cells = Math.max(2, (int) Math.round(size * treeCover(difficulty)));
+        byte[] masks = spanningTree(rows, cols, power, cells, random);
+        if (masks[power] == 0) {
+            throw new IllegalStateException("No valid starting position from PowerNode");
         }
-
-        // No valid children
-        if (outgoingDirs.isEmpty()) {
-            game.createBulbNode(currentPos, entryDir);
-            return;
+        for (int cell = 0; cell < size; cell++) {
+            int mask = masks[cell];
+            if (mask == 0) continue;
+            int type = cell == power ? BoardStore.TYPE_POWER
+                    : Connectors.count(mask) == 1 ? BoardStore.TYPE_BULB : BoardStore.TYPE_LINK;
+            game.setNode(cell / cols + 1, cell % cols + 1, type, mask);
         }
 
-        // Create LinkNode with multiple connectors
-        game.createLinkNode(currentPos, connectedDirs.get(0), connectedDirs.get(1));
-        for (int i = 2; i < connectedDirs.size(); i++) {
-            game.node(currentPos).addConnector(connectedDirs.get(i));
-        }
-        visited.add(currentPos);
+        // Save pre-scrambled state for hinting
+        game.saveSolutionState();
+        return game;
+    }
 
-        for (Side outDir : outgoingDirs) {
-            Position next = getAdjacent(currentPos, outDir);
-            visited.add(next);
-            parentMap.put(next, currentPos);
-            childrenMap.computeIfAbsent(currentPos, k -> new ArrayList<>()).add(next);
+    // part of the board the tree takes, the rest is left for fakes. Easy has no fakes, so its tree fills the board
+    private static double treeCover(Difficulty difficulty) {
+        return switch (difficulty) {
+            case Easy -> 1.0;
+            case Medium -> 0.8;
+            case Hard -> 0.6;
+        };
+    }
 
-            Side nextIncoming = getOpposite(outDir);
-            growTree(game, next, currentPos, nextIncoming, visited, depth + 1, maxDepth, parentMap, childrenMap);
+    /*
+     * Randomized Prim: a random cell next to the tree joins it through a random neighbour that is already in the
+     * tree, until the tree has the given number of cells. Returns the connector mask of every cell, 0 outside of the
+     * tree. The power node keeps a single connector, every other cell with one connector is a leaf (a bulb).
+     * Only flat arrays indexed by row * cols + col, big boards need neither recursion nor position objects.
+     */
+    static byte[] spanningTree(int rows, int cols, int power, int cells, RandomGenerator random) {
+        int size = rows * cols;
+        byte[] masks = new byte[size];
+        byte[] state = new byte[size]; // FREE, FRONTIER or TREE
+        int[] frontier = new int[size];
+        int frontierSize = 0;
+        int[] offsets = {-cols, 1, cols, -1}; // same order as Connectors.SIDES
+        int[] candidates = new int[offsets.length];
+        state[power] = TREE;
+        int treeSize = 1;
+        int cell = power;
+        while (true) {
+            // the new cell's neighbours can join the tree now
+            int open = openSides(cell, rows, cols);
+            for (int k = 0; k < offsets.length; k++) {
+                int next = cell + offsets[k];
+                if ((open & Connectors.SIDES[k].bit()) != 0 && state[next] == FREE) {
+                    state[next] = FRONTIER;
+                    frontier[frontierSize++] = next;
+                }
+            }
+            int count = 0;
+            while (count == 0 && frontierSize > 0 && treeSize < cells) {
+                int pick = random.nextInt(frontierSize);
+                cell = frontier[pick];
+                frontier[pick] = frontier[--frontierSize];
+                state[cell] = FREE;
+                open = openSides(cell, rows, cols);
+                for (int k = 0; k < offsets.length; k++) {
+                    int next = cell + offsets[k];
+                    if ((open & Connectors.SIDES[k].bit()) != 0 && state[next] == TREE
+                            && (next != power || masks[power] == 0)) {
+                        candidates[count++] = k;
+                    }
+                }
+                // only the power node is next to it, the cell comes back when another neighbour joins
+            }
+            if (count == 0) return masks;
+            int k = candidates[random.nextInt(count)];
+            int bit = Connectors.SIDES[k].bit();
+            masks[cell] |= (byte) bit;
+            masks[cell + offsets[k]] |= (byte) Connectors.opposite(bit);
+            state[cell] = TREE;
+            treeSize++;
         }
     }
 
-
-    private Side getDirection(Position from, Position to) {
-        if (to.row() < from.row()) return Side.NORTH;
-        if (to.row() > from.row()) return Side.SOUTH;
-        if (to.col() < from.col()) return Side.WEST;
-        if (to.col() > from.col()) return Side.EAST;
-        throw new IllegalArgumentException("Positions must be adjacent");
+    // sides of the cell that do not face the edge of the board
+    private static int openSides(int cell, int rows, int cols) {
+        int row = cell / cols;
+        int col = cell - row * cols;
+        return (row > 0 ? Side.NORTH.bit() : 0) | (col < cols - 1 ? Side.EAST.bit() : 0)
+                | (row < rows - 1 ? Side.SOUTH.bit() : 0) | (col > 0 ? Side.WEST.bit() : 0);
     }
 
     public static void scrambleLinks(Game game) {
-        Random random = new Random();
-        game.getBoard().values().stream()
-                .filter(GameNode::isLink)
-                .forEach(node -> {
-                    int rotations = random.nextInt(4);
-                    for (int i = 0; i < rotations; i++) node.turn();
-                });
-        game.getBoard().values().stream()
-                .filter(GameNode::isBulb)
-                .forEach(node -> {
-                    int rotations = random.nextInt(4);
-                    for (int i = 0; i < rotations; i++) node.turn();
-                });
-        game.getBoard().values().stream()
-                .filter(GameNode::isPower)
-                .forEach(node -> {
-                    int rotations = random.nextInt(4);
-                    for (int i = 0; i < rotations; i++) node.turn();
-                });
-    }
-
-    // Helper methods
-    private Position randomPosition(int rows, int cols) {
-        return new Position(random.nextInt(rows) + 1, random.nextInt(cols) + 1);
-    }
-
-
-    private Position getAdjacent(Position p, Side dir) {
-        return switch (dir) {
-            case NORTH -> new Position(p.row()-1, p.col());
-            case SOUTH -> new Position(p.row()+1, p.col());
-            case EAST -> new Position(p.row(), p.col()+1);
-            case WEST -> new Position(p.row(), p.col()-1);
-        };
+        scrambleLinks(game, new Random());
     }
 
-    private boolean isValid(Position p, Game game) {
-        return p.row() > 0 && p.col() > 0 &&
-                p.row() <= game.rows() && p.col() <= game.cols();
+    public static void scrambleLinks(Game game, RandomGenerator random) {
+        // one light recalculation for the whole scramble instead of one per turn
+        game.beginBatch();
+        try {
+            game.nodesOfType(BoardStore.TYPE_LINK).forEach(node -> scramble(node, random));
+            game.nodesOfType(BoardStore.TYPE_BULB).forEach(node -> scramble(node, random));
+            game.nodesOfType(BoardStore.TYPE_POWER).forEach(node -> scramble(node, random));
+        } finally {
+            game.commitBatch();
+        }
     }
 
-    private Side getOpposite(Side dir) {
-        return switch (dir) {
-            case NORTH -> Side.SOUTH;
-            case SOUTH -> Side.NORTH;
-            case EAST -> Side.WEST;
-            case WEST -> Side.EAST;
-        };
+    private static void scramble(GameNode node, RandomGenerator random) {
+        int rotations = random.nextInt(4);
+        node.beginUpdate();
+        for (int i = 0; i < rotations; i++) node.turn();
+        node.endUpdate();
     }
 
     public void addFakesNodes(Game game, Difficulty difficulty) {
-        Set<Position> emptyPositions = game.findEmptyNodes();
-        if(emptyPositions.isEmpty()) return;
+        placeFakes(game, difficulty);
+    }
 
-        List<Position> emptyList = new ArrayList<>(emptyPositions);
-        Collections.shuffle(emptyList);
+    // returns where the fakes were placed
+    private List<Position> placeFakes(Game game, Difficulty difficulty) {
+        int emptyCount = game.emptyCount();
+        if(emptyCount == 0) return List.of();
 
         int fakeCount;
         if(difficulty == Difficulty.Medium){
             double percentage = 0.2 + random.nextDouble() * 0.2; // min 1, max 5;
-            fakeCount = (int) Math.ceil(emptyList.size() * percentage);
+            fakeCount = (int) Math.ceil(emptyCount * percentage);
             fakeCount = Math.max(1, Math.min(fakeCount, 5));
         } else {
             //add fake nodes to all empty cells
-            fakeCount = emptyList.size();
+            fakeCount = emptyCount;
         }
-        for (int i = 0; i < Math.min(fakeCount, emptyList.size()); i++) {
-            Position pos = emptyList.get(i);
-            addRandomFakeLinkNode(game, pos);
+        // only the picked cells are materialized, big sparse boards never list all their empty cells
+        // more cells than needed, a cell where no shape is safe stays empty
+        List<Position> cells = game.randomEmptyNodes((int) Math.min(emptyCount, fakeCount * 4L), random);
+        BitSet fakes = new BitSet(); // store indices of the fakes placed here, every other node is real
+        List<Position> placed = new ArrayList<>();
+        for (Position pos : cells) {
+            if (placed.size() == fakeCount) break;
+            for (int tries = 0; tries < SHAPE_TRIES; tries++) {
+                int mask = randomFakeMask();
+                if (isSafeFake(game, fakes, pos, mask)) {
+                    game.setNode(pos.row(), pos.col(), BoardStore.TYPE_LINK, mask);
+                    fakes.set(game.getStore().index(pos.row(), pos.col()));
+                    placed.add(pos);
+                    break;
+                }
+            }
         }
+        return placed;
     }
 
-    private void addRandomFakeLinkNode(Game game, Position pos) {
+    private int randomFakeMask() {
         // Determine number of connectors (2-3)
         int numConnectors = random.nextInt(2) + 2;
-        List<Side> allSides = new ArrayList<>(Arrays.asList(Side.values()));
-        Collections.shuffle(allSides);
-
-        // Create the node with the first two connectors
-        game.createLinkNode(pos, allSides.get(0), allSides.get(1));
-        GameNode node = game.node(pos);
+        Side[] allSides = Side.values();
+        int mask = 0;
+        for (int i = 0; i < numConnectors; i++) { // the first sides of a shuffle are enough
+            int pick = i + random.nextInt(allSides.length - i);
+            Side side = allSides[pick];
+            allSides[pick] = allSides[i];
+            allSides[i] = side;
+            mask |= side.bit();
+        }
+        return mask;
+    }
 
-        // Add remaining connectors (if any)
-        for (int i = 2; i < numConnectors; i++) {
-            node.addConnector(allSides.get(i));
+    /*
+     * A fake is safe when no path over fakes joins two different real nodes, counting only the turns the shapes of
+     * the fakes can make. Light could then only enter a group of fakes as a dead end from a single real node, and
+     * that node would need one more side than it has, since every node uses all its connectors in the solution.
+     * So the fakes stay dark in every solution and the level keeps exactly the solutions it had without them.
+     * Only the fakes around the cell are walked, when the walk gets longer than FAKE_CHECK_LIMIT the fake is refused.
+     */
+    private boolean isSafeFake(Game game, BitSet fakes, Position pos, int mask) {
+        int sides = Connectors.SIDES.length;
+        int[][] reached = new int[sides][];
+        int[] budget = {FAKE_CHECK_LIMIT};
+        for (int k = 0; k < sides; k++) {
+            reached[k] = realNodesBehind(game, fakes, pos, k, budget);
+            if (reached[k] == null) return false;
+        }
+        for (int a = 0; a < sides; a++) {
+            for (int b = a + 1; b < sides; b++) {
+                if (reached[a].length == 0 || reached[b].length == 0 || !canJoin(mask, a, b)) continue;
+                // the same single node on both sides only makes a loop back to it
+                if (reached[a].length > 1 || reached[b].length > 1 || reached[a][0] != reached[b][0]) return false;
+            }
         }
+        return true;
     }
 
-    private void saveOriginalLayout(Game game, int levelNumber) {
-        Path layoutPath = Paths.get("data", "level_layout", "random", "level" + levelNumber + ".txt");
+    // up to two different real nodes light leaving the cell through the side could reach over fakes, null when
+    // the walk ran out of budget
+    private int[] realNodesBehind(Game game, BitSet fakes, Position pos, int side, int[] budget) {
+        BoardStore store = game.getStore();
+        int start = store.index(pos.row(), pos.col());
+        int[] found = new int[2];
+        int count = 0;
+        int entered = 0;
+        int head = 0;
+        int tail = 0;
+        walkQueue[tail++] = start * 4 + side; // leave the cell through the side
         try {
-            Files.createDirectories(layoutPath.getParent());
+            while (head < tail) {
+                int step = walkQueue[head++];
+                int from = step >> 2;
+                int exit = step & 3;
+                int row = store.rowOf(from) + ROW_STEP[exit];
+                int col = store.colOf(from) + COL_STEP[exit];
+                if (row < 1 || col < 1 || row > game.rows() || col > game.cols()) continue;
+                int index = store.index(row, col);
+                if (index == start || store.type(index) == BoardStore.TYPE_EMPTY) continue;
+                if (!fakes.get(index)) {
+                    if (count == 0 || count == 1 && found[0] != index) found[count++] = index;
+                    if (count == 2) return found;
+                    continue;
+                }
+                int entry = (exit + 2) % 4;
+                if (walkSeen.get(index * 4 + entry)) continue;
+                if (--budget[0] < 0) return null;
+                walkSeen.set(index * 4 + entry);
+                walkEntered[entered++] = index * 4 + entry;
+                for (int k = 0; k < Connectors.SIDES.length; k++) {
+                    if (k != entry && canJoin(store.mask(index), entry, k)) walkQueue[tail++] = index * 4 + k;
+                }
+            }
+            return Arrays.copyOf(found, count);
+        } finally {
+            for (int i = 0; i < entered; i++) walkSeen.clear(walkEntered[i]); // only the bits this walk set
+        }
+    }
 
-            List<String> lines = new ArrayList<>();
-            lines.add("grid:[" + game.rows() + "," + game.cols() + "]");
+    // some rotation of the shape has connectors on both sides
+    private static boolean canJoin(int mask, int a, int b) {
+        int both = Connectors.SIDES[a].bit() | Connectors.SIDES[b].bit();
+        for (int r = 0; r < 4; r++) {
+            if ((mask & both) == both) return true;
+            mask = Connectors.rotateClockwise(mask);
+        }
+        return false;
+    }
 
-            for (Map.Entry<Position, GameNode> entry : game.getBoard().entrySet()) {
-                GameNode node = entry.getValue();
-                if (node.isEmpty()) continue;
+    private void saveOriginalLayout(Game game, int levelNumber) {
+        saveLayout(layoutLines(game), levelNumber);
+    }
 
-                String type = node.toString().substring(1, 1 + 1); // single char: P, B, L
-                Position pos = node.getPosition();
-                String connectorStr = node.getConnectors().stream()
-                        .map(Enum::name)
-                        .collect(Collectors.joining(","));
-                lines.add(String.format("{%s[%d@%d][%s]}", type, pos.row(), pos.col(), connectorStr));
-            }
+    // layout file of the saved solution, fakes left out, works on a scrambled level as well
+    static List<String> layoutLines(Game game) {
+        List<String> lines = new ArrayList<>();
+        lines.add("grid:[" + game.rows() + "," + game.cols() + "]");
+
+        for (GameNode node : game.nodes()) {
+            Position pos = node.getPosition();
+            Set<Side> connectors = game.getSolutionConnectors(pos);
+            if (connectors == null) continue; // fake node
+
+            String type = node.toString().substring(1, 1 + 1); // single char: P, B, L
+            String connectorStr = connectors.stream()
+                    .map(Enum::name)
+                    .collect(Collectors.joining(","));
+            lines.add(String.format("{%s[%d@%d][%s]}", type, pos.row(), pos.col(), connectorStr));
+        }
+        return lines;
+    }
 
+    // writes the lines of layoutLines() as the layout of the given level
+    void saveLayout(List<String> lines, int levelNumber) {
+        Path layoutPath = layoutDir.resolve("level" + levelNumber + ".txt");
+        try {
+            Files.createDirectories(layoutPath.getParent());
             Files.write(layoutPath, lines);
         } catch (IOException e) {
             System.err.println("Failed to save original layout for random level: " + e.getMessage());
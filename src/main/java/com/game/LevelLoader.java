@@ -2,11 +2,15 @@ package com.game;
 /*
  * author: xstahl01
  *  This class is responsible for loading the game level from a files in data directory.
+ *  Binary logs (see com.utils.BinaryLogWriter) are recognised and loaded without parsing any text.
  */
 
+import com.common.BoardStore;
 import com.common.GameNode;
 import com.common.Position;
 import com.common.Side;
+import com.utils.BinaryLogReader;
+import com.utils.LogState;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -20,6 +24,9 @@ import java.util.stream.Collectors;
 public class LevelLoader {
 
     public static Game loadLevel(String filePath) throws IOException {
+        if (BinaryLogReader.isBinary(Paths.get(filePath))) {
+            return loadLevel(BinaryLogReader.read(Paths.get(filePath)));
+        }
         List<String> lines = Files.readAllLines(Paths.get(filePath));
         List<String> nodeLines = lines.stream()
             .filter(line -> line.matches("\\{[A-Z]\\[\\d+@\\d+\\].*}"))
@@ -73,7 +80,7 @@ public class LevelLoader {
             String[] posParts = posPart.split("@");
             int row = Integer.parseInt(posParts[0]);
             int col = Integer.parseInt(posParts[1]);
-            Position pos = new Position(row, col);
+            Position pos = Position.of(row, col);
 
             List<Side> sides = new ArrayList<>();
             if (sidesPart != null && !sidesPart.isEmpty()) {
@@ -126,4 +133,64 @@ public class LevelLoader {
         game.init();
         return game;
     }
+
+    // the nodes of a log, the cells are already decoded so nothing is parsed here
+    public static Game loadLevel(LogState state) throws IOException {
+        return build(state.rows(), state.cols(), state.cells());
+    }
+
+    /*
+     * The game as the log left it: the board of the last checkpoint with only the moves, undos and redos logged
+     * after it replayed, instead of every move since the level started.
+     */
+    public static Game resumeLevel(LogState state) throws IOException {
+        boolean checkpoint = state.checkpoint() != null;
+        Game game = build(state.rows(), state.cols(), checkpoint ? state.checkpoint() : state.cells());
+        game.beginBatch(); // light is recomputed once after all turns
+        try {
+            for (int turn : state.turnsFrom(checkpoint ? state.checkpointAt() : 0)) {
+                int index = Math.abs(turn) - 1;
+                GameNode node = game.node(Position.of(index / state.cols() + 1, index % state.cols() + 1));
+                if (node == null || node.isEmpty()) continue;
+                if (turn > 0) node.turn();
+                else node.reverseTurn();
+            }
+        } finally {
+            game.commitBatch();
+        }
+        return game;
+    }
+
+    private static Game build(int rows, int cols, byte[] cells) throws IOException {
+        boolean hasNodes = false;
+        for (byte cell : cells) hasNodes |= cell != 0;
+        if (!hasNodes) {
+            throw new IOException("No valid node data in log file");
+        }
+        Game game = Game.create(rows, cols);
+        for (int index = 0; index < cells.length; index++) {
+            int cell = cells[index] & 0xFF;
+            if (cell == 0) continue;
+            Position pos = Position.of(index / cols + 1, index % cols + 1);
+            Side[] sides = Side.fromMask(LogState.mask(cell)).toArray(new Side[0]);
+            GameNode node;
+            switch (LogState.type(cell)) {
+                case BoardStore.TYPE_POWER:
+                    node = game.createPowerNode(pos, sides);
+                    break;
+                case BoardStore.TYPE_BULB:
+                    if (sides.length != 1) {
+                        System.err.println("Error creating node: Bulb requires one side");
+                        continue;
+                    }
+                    node = game.createBulbNode(pos, sides[0]);
+                    break;
+                default:
+                    node = game.createLinkNode(pos, sides);
+            }
+            if (node != null) node.setRotations(LogState.rotations(cell)); // null when the game refused the node
+        }
+        game.init();
+        return game;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Keeps random levels ready for the custom game, so starting one does not wait for the generator.
+ * A single daemon worker builds levels for every (rows, cols, difficulty) that was asked for and refills them as
+ * they are taken. At most levelsPerKey levels of one kind are kept and all of them together stay under maxBytes,
+ * the kinds used longest ago are dropped first when a new one needs room. A level taken before it is ready is
+ * handed over by the worker as soon as it is built, the caller never generates it itself.
+ */
+
+import com.ui.Difficulty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LevelPool {
+    // rough size of a generated level per cell: both stores, node views, positions and the layout lines
+    private static final long BYTES_PER_CELL = 256;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "level-pool");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY); // never slows down the game itself
+        return thread;
+    });
+    // generates on the worker only, take() saves the layouts of ready levels off the calling thread
+    private final LevelGenerator generator = new LevelGenerator();
+    // the first key is the one used longest ago, see touch()
+    private final Map<Key, Deque<Level>> levels = new LinkedHashMap<>();
+    // takes waiting for the worker to build their level, oldest first
+    private final Map<Key, Deque<Waiter>> waiters = new HashMap<>();
+    private int levelsPerKey;
+    private long maxBytes;
+    private long pooledBytes;
+    private Key filling; // key the worker is building a level for, null when idle
+
+    private record Key(int rows, int cols, Difficulty difficulty) {
+        long bytes() {
+            return (long) rows * cols * BYTES_PER_CELL;
+        }
+    }
+
+    // scrambled level and the layout of its solution, ready to be saved under any level number
+    private record Level(Game game, List<String> layout) {}
+
+    private record Waiter(int levelNumber, CompletableFuture<Game> future) {}
+
+    public LevelPool(int levelsPerKey, long maxBytes) {
+        this.levelsPerKey = levelsPerKey;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isUniqueSolution() {
+        return generator.isUniqueSolution();
+    }
+
+    // set before the first prefill(), levels already in the pool keep what they were built with
+    public void setUniqueSolution(boolean uniqueSolution) {
+        generator.setUniqueSolution(uniqueSolution);
+    }
+
+    public synchronized int getLevelsPerKey() {
+        return levelsPerKey;
+    }
+
+    // levels kept ready for one (rows, cols, difficulty), 0 turns the pool off
+    public synchronized void setLevelsPerKey(int levelsPerKey) {
+        this.levelsPerKey = levelsPerKey;
+        for (Map.Entry<Key, Deque<Level>> entry : levels.entrySet()) {
+            while (entry.getValue().size() > Math.max(0, levelsPerKey)) {
+                entry.getValue().pollLast();
+                pooledBytes -= entry.getKey().bytes();
+            }
+        }
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // estimated memory all pooled levels may take together
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict(null, 0);
+    }
+
+    public synchronized int size(int rows, int cols, Difficulty difficulty) {
+        Deque<Level> queue = levels.get(new Key(rows, cols, difficulty));
+        return queue == null ? 0 : queue.size();
+    }
+
+    // start keeping levels of this kind ready, cheap to call on every change of the input
+    public synchronized void prefill(int rows, int cols, Difficulty difficulty) {
+        Key key = new Key(rows, cols, difficulty);
+        touch(key);
+        schedule(key);
+    }
+
+    /*
+     * Takes a ready level or waits for the worker to build one, a level of this kind the worker is building right
+     * now is not built twice. The layout is saved under the given level number before the future completes, so
+     * it exists as soon as the game starts. Never generates or writes anything on the calling thread.
+     */
+    public synchronized CompletableFuture<Game> take(int rows, int cols, Difficulty difficulty, int levelNumber) {
+        Key key = new Key(rows, cols, difficulty);
+        Level level = touch(key).pollFirst();
+        if (level != null) {
+            pooledBytes -= key.bytes();
+            schedule(key);
+            return CompletableFuture.supplyAsync(() -> handOver(level, levelNumber));
+        }
+        if (worker.isShutdown()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The level pool is shut down"));
+        }
+        CompletableFuture<Game> future = new CompletableFuture<>();
+        waiters.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(new Waiter(levelNumber, future));
+        schedule(key);
+        return future;
+    }
+
+    // drops all ready levels, the worker finishes the one it is building
+    public synchronized void clear() {
+        levels.clear();
+        pooledBytes = 0;
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+        List<Waiter> waiting = new ArrayList<>();
+        synchronized (this) {
+            waiters.values().forEach(waiting::addAll);
+            waiters.clear();
+        }
+        waiting.forEach(waiter -> waiter.future().cancel(false));
+    }
+
+    // the worker builds one level per task, so a key asked for later does not wait for a whole other key
+    private void schedule(Key key) {
+        if (filling != null || !needsLevel(key) || worker.isShutdown()) return;
+        filling = key;
+        worker.execute(() -> fill(key));
+    }
+
+    private void fill(Key key) {
+        Level level;
+        try {
+            Game game = generator.generateLevel(key.rows(), key.cols(), key.difficulty());
+            level = new Level(game, LevelGenerator.layoutLines(game));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to generate a level for the pool: " + e.getMessage());
+            Deque<Waiter> failed;
+            synchronized (this) {
+                filling = null;
+                levels.remove(key);
+                failed = waiters.remove(key);
+                scheduleNext();
+            }
+            if (failed != null) failed.forEach(waiter -> waiter.future().completeExceptionally(e));
+            return;
+        }
+        Waiter waiter;
+        synchronized (this) {
+            filling = null;
+            Deque<Waiter> waiting = waiters.get(key);
+            waiter = waiting == null ? null : waiting.pollFirst();
+            if (waiting != null && waiting.isEmpty()) waiters.remove(key);
+            Deque<Level> queue = levels.get(key);
+            if (waiter == null && queue != null && needsLevel(key)) {
+                evict(key, key.bytes());
+                queue.addLast(level);
+                pooledBytes += key.bytes();
+            }
+            scheduleNext();
+        }
+        // the next level is queued behind this, so the waiting game starts first
+        if (waiter != null) waiter.future().complete(handOver(level, waiter.levelNumber()));
+    }
+
+    // a key somebody waits for comes first, then the key asked for last, then the older ones
+    private void scheduleNext() {
+        Key next = waiters.isEmpty() ? null : waiters.keySet().iterator().next();
+        if (next == null) {
+            for (Key candidate : List.copyOf(levels.keySet())) {
+                if (needsLevel(candidate)) next = candidate;
+            }
+        }
+        if (next != null) schedule(next);
+    }
+
+    // saves the layout under the level number of the take and hands out the game
+    private Game handOver(Level level, int levelNumber) {
+        generator.saveLayout(level.layout(), levelNumber);
+        return level.game();
+    }
+
+    private boolean needsLevel(Key key) {
+        if (waiters.containsKey(key)) return true; // built even when the pool is full or turned off
+        Deque<Level> queue = levels.get(key);
+        if (queue == null || queue.size() >= levelsPerKey || key.bytes() > maxBytes) return false;
+        // room left, or levels of kinds used longer ago that can make room
+        long free = maxBytes - pooledBytes;
+        for (Map.Entry<Key, Deque<Level>> entry : levels.entrySet()) {
+            if (free >= key.bytes()) return true;
+            if (entry.getKey().equals(key)) return false;
+            free += entry.getKey().bytes() * entry.getValue().size();
+        }
+        return free >= key.bytes();
+    }
+
+    // frees the given number of bytes, dropping levels of the kinds used longest ago first but never of keep
+    private void evict(Key keep, long needed) {
+        Iterator<Map.Entry<Key, Deque<Level>>> it = levels.entrySet().iterator();
+        while (pooledBytes + needed > maxBytes && it.hasNext()) {
+            Map.Entry<Key, Deque<Level>> entry = it.next();
+            if (entry.getKey().equals(keep)) break; // the kinds after it were used more recently
+            while (!entry.getValue().isEmpty() && pooledBytes + needed > maxBytes) {
+                entry.getValue().pollFirst();
+                pooledBytes -= entry.getKey().bytes();
+            }
+        }
+    }
+
+    // moves the key to the end of the order, creating its queue when it is new
+    private Deque<Level> touch(Key key) {
+        Deque<Level> queue = levels.remove(key);
+        if (queue == null) queue = new ArrayDeque<>();
+        levels.put(key, queue);
+        return queue;
+    }
+}
@@ -0,0 +1,97 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Live index of the cells of each node type (see BoardStore.TYPE_*). Every cell is listed under exactly one
+ * type, so moving a cell to another type and looking up all cells of a type are cheap. Sparse boards do not
+ * list their empty cells, those are only counted.
+ */
+
+import com.common.BoardStore;
+import com.common.IntIntMap;
+
+import java.util.Arrays;
+
+class NodeIndex {
+    private static final int TYPES = 4;
+
+    private final int size;
+    private final boolean listEmpty;
+    private final int[][] cells = new int[TYPES][];
+    private final int[] counts = new int[TYPES];
+    // position of every cell inside the list of its type, a map when the empty cells are not listed
+    private final int[] slots;
+    private final IntIntMap slotMap;
+
+    // all cells start as empty cells
+    NodeIndex(int size, boolean listEmpty) {
+        this.size = size;
+        this.listEmpty = listEmpty;
+        for (int type = 0; type < TYPES; type++) {
+            cells[type] = new int[type == BoardStore.TYPE_EMPTY && listEmpty ? size : 4];
+        }
+        if (listEmpty) {
+            slots = new int[size];
+            slotMap = null;
+            for (int i = 0; i < size; i++) {
+                cells[BoardStore.TYPE_EMPTY][i] = i;
+                slots[i] = i;
+            }
+        } else {
+            slots = null;
+            slotMap = new IntIntMap();
+        }
+        counts[BoardStore.TYPE_EMPTY] = size;
+    }
+
+    int size(int type) {
+        return counts[type];
+    }
+
+    boolean listsEmpty() {
+        return listEmpty;
+    }
+
+    // i-th cell of the given type, the order changes when cells are moved
+    int get(int type, int i) {
+        if (type == BoardStore.TYPE_EMPTY && !listEmpty) {
+            throw new UnsupportedOperationException("Empty cells are not listed on a sparse board");
+        }
+        return cells[type][i];
+    }
+
+    void move(int cell, int from, int to) {
+        if (from == to) return;
+        counts[from]--;
+        counts[to]++;
+        if (listEmpty || from != BoardStore.TYPE_EMPTY) {
+            // remove from the old list by moving its last cell into the gap
+            int[] old = cells[from];
+            int gap = slot(cell);
+            int last = old[counts[from]];
+            old[gap] = last;
+            setSlot(last, gap);
+        }
+        if (listEmpty || to != BoardStore.TYPE_EMPTY) {
+            int count = counts[to] - 1;
+            if (count == cells[to].length) {
+                cells[to] = Arrays.copyOf(cells[to], Math.min(Math.max(4, count * 2), size));
+            }
+            cells[to][count] = cell;
+            setSlot(cell, count);
+        } else {
+            slotMap.remove(cell);
+        }
+    }
+
+    private int slot(int cell) {
+        return listEmpty ? slots[cell] : slotMap.get(cell, -1);
+    }
+
+    private void setSlot(int cell, int slot) {
+        if (listEmpty) {
+            slots[cell] = slot;
+        } else {
+            slotMap.put(cell, slot);
+        }
+    }
+}
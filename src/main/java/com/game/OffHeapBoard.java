@@ -0,0 +1,314 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Board for very large grids (stress tests, headless tools). Every cell is a single byte in a direct buffer outside
+ * of the java heap, the light is propagated directly over that buffer. Nodes are not objects here, fieldAt()
+ * returns a short-lived view of one cell.
+ */
+
+import com.common.BoardStore;
+import com.common.Connectors;
+import com.common.GameNode;
+import com.common.Side;
+import com.tool.AbstractObservableField;
+import com.tool.ToolEnvironment;
+import com.tool.ToolField;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class OffHeapBoard implements ToolEnvironment {
+    // cell byte: bits 0-3 connector mask, bits 4-5 node type, bit 6 lit
+    private static final int MASK_BITS = 0x0F;
+    private static final int TYPE_SHIFT = 4;
+    private static final int LIT_BIT = 0x40;
+    private static final long LIT_BITS = 0x4040404040404040L;
+    private static final int MIN_QUEUE = 1024;
+
+    private final int rows;
+    private final int cols;
+    private final ByteBuffer cells;
+    private ByteBuffer queue; // ring buffer of cell indexes used by the propagation, also off-heap
+    private int powerIndex = -1;
+    private int nodeCount = 0;
+    private int totalBulbs = 0;
+    private int litBulbs = 0;
+    private boolean lightStale = false; // light is recalculated on the next query after a turn
+
+    public OffHeapBoard(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) throw new IllegalArgumentException("Invalid dimensions");
+        this.rows = rows;
+        this.cols = cols;
+        // a direct buffer is zeroed, so every cell starts empty and unlit
+        this.cells = ByteBuffer.allocateDirect(Math.multiplyExact(rows, cols));
+    }
+
+    // copies the nodes of a game, the light is recalculated on the first query
+    public static OffHeapBoard copyOf(Game game) {
+        OffHeapBoard board = new OffHeapBoard(game.rows(), game.cols());
+        for (GameNode node : game.nodes()) {
+            int type = node.isPower() ? BoardStore.TYPE_POWER : node.isBulb() ? BoardStore.TYPE_BULB : BoardStore.TYPE_LINK;
+            board.setNode(node.getPosition().row(), node.getPosition().col(), type, node.connectorMask());
+        }
+        return board;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    public int size() {
+        return cells.capacity();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int index(int row, int col) {
+        if (row <= 0 || col <= 0 || row > rows || col > cols) {
+            throw new IndexOutOfBoundsException("Invalid position " + row + "@" + col);
+        }
+        return (row - 1) * cols + (col - 1);
+    }
+
+    private int type(int index) {
+        return (cells.get(index) >> TYPE_SHIFT) & 3;
+    }
+
+    private int mask(int index) {
+        return cells.get(index) & MASK_BITS;
+    }
+
+    private boolean lit(int index) {
+        return (cells.get(index) & LIT_BIT) != 0;
+    }
+
+    /*
+     * Places a node (one of the BoardStore.TYPE_* constants) with the given connectors, TYPE_EMPTY removes the
+     * node. Same rules as in Game: one power node, links need two connectors.
+     */
+    public void setNode(int row, int col, int type, int mask) {
+        int index = index(row, col);
+        if (type < BoardStore.TYPE_EMPTY || type > BoardStore.TYPE_LINK) {
+            throw new IllegalArgumentException("Unknown node type " + type);
+        }
+        if (type == BoardStore.TYPE_EMPTY) {
+            mask = 0;
+        } else if (type == BoardStore.TYPE_LINK && Connectors.count(mask) < 2) {
+            throw new IllegalArgumentException("LinkNode must have at least 2 connectors");
+        } else if (Connectors.count(mask) < 1) {
+            throw new IllegalArgumentException("Node must have at least 1 connector");
+        }
+        int old = type(index);
+        if (type == BoardStore.TYPE_POWER && powerIndex >= 0 && powerIndex != index) {
+            throw new IllegalStateException("Only one PowerNode allowed");
+        }
+        if (old == BoardStore.TYPE_POWER) powerIndex = -1;
+        if (old == BoardStore.TYPE_BULB) totalBulbs--;
+        if (old != BoardStore.TYPE_EMPTY) nodeCount--;
+        if (type == BoardStore.TYPE_POWER) powerIndex = index;
+        if (type == BoardStore.TYPE_BULB) totalBulbs++;
+        if (type != BoardStore.TYPE_EMPTY) nodeCount++;
+        cells.put(index, (byte) ((mask & MASK_BITS) | type << TYPE_SHIFT));
+        lightStale = true;
+    }
+
+    public boolean hasPowerNode() {
+        return powerIndex >= 0;
+    }
+
+    @Override
+    public ToolField fieldAt(int row, int col) {
+        if (row <= 0 || col <= 0 || row > rows || col > cols) {
+            return null;
+        }
+        return new Field(index(row, col));
+    }
+
+    public void turn(int row, int col) {
+        rotate(index(row, col), true);
+    }
+
+    private void rotate(int index, boolean clockwise) {
+        int mask = mask(index);
+        if (mask == 0) return;
+        mask = clockwise ? Connectors.rotateClockwise(mask) : Connectors.rotateCounterClockwise(mask);
+        cells.put(index, (byte) ((cells.get(index) & ~MASK_BITS) | mask));
+        lightStale = true;
+    }
+
+    public int litBulbs() {
+        refreshLight();
+        return litBulbs;
+    }
+
+    public int totalBulbs() {
+        return totalBulbs;
+    }
+
+    public boolean isWon() {
+        return totalBulbs > 0 && litBulbs() == totalBulbs;
+    }
+
+    private void refreshLight() {
+        if (lightStale) recalculateLight();
+    }
+
+    public void recalculateLight() {
+        lightStale = false;
+        clearLit();
+        litBulbs = 0;
+        if (powerIndex < 0) return;
+        int capacity = ensureQueue();
+        light(powerIndex);
+        queue.putInt(0, powerIndex);
+        int head = 0;
+        int tail = 1;
+        int queued = 1;
+        while (queued > 0) {
+            int current = queue.getInt(head * Integer.BYTES);
+            head = head + 1 == capacity ? 0 : head + 1;
+            queued--;
+            if (type(current) == BoardStore.TYPE_BULB) { // bulb should be dead end
+                continue;
+            }
+            int mask = mask(current);
+            for (Side side : Connectors.SIDES) {
+                if ((mask & side.bit()) == 0) {
+                    continue;
+                }
+                int next = neighbour(current, side);
+                if (next < 0 || lit(next) || (mask(next) & Connectors.opposite(side.bit())) == 0) {
+                    continue;
+                }
+                light(next);
+                if (queued == capacity) {
+                    head = growQueue(head, queued);
+                    capacity = queue.capacity() / Integer.BYTES;
+                    tail = queued;
+                }
+                queue.putInt(tail * Integer.BYTES, next);
+                tail = tail + 1 == capacity ? 0 : tail + 1;
+                queued++;
+            }
+        }
+    }
+
+    private void light(int index) {
+        cells.put(index, (byte) (cells.get(index) | LIT_BIT));
+        if (type(index) == BoardStore.TYPE_BULB) litBulbs++;
+    }
+
+    // clears the lit bit of eight cells at once
+    private void clearLit() {
+        int size = cells.capacity();
+        int i = 0;
+        for (; i + Long.BYTES <= size; i += Long.BYTES) {
+            long word = cells.getLong(i);
+            if ((word & LIT_BITS) != 0) cells.putLong(i, word & ~LIT_BITS);
+        }
+        for (; i < size; i++) {
+            cells.put(i, (byte) (cells.get(i) & ~LIT_BIT));
+        }
+    }
+
+    private int neighbour(int index, Side side) {
+        int col = index % cols;
+        return switch (side) {
+            case NORTH -> index >= cols ? index - cols : -1;
+            case SOUTH -> index + cols < cells.capacity() ? index + cols : -1;
+            case WEST -> col > 0 ? index - 1 : -1;
+            case EAST -> col < cols - 1 ? index + 1 : -1;
+        };
+    }
+
+    // the frontier of the propagation is usually much smaller than the board, the queue grows only when needed
+    private int ensureQueue() {
+        if (queue == null) {
+            int capacity = Math.max(MIN_QUEUE, Math.min(nodeCount, rows + cols) * 4);
+            queue = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+        }
+        return queue.capacity() / Integer.BYTES;
+    }
+
+    // doubles the full ring buffer, its content is moved to the start of the new one, returns the new head
+    private int growQueue(int head, int queued) {
+        int capacity = queue.capacity() / Integer.BYTES;
+        ByteBuffer bigger = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, 2 * Integer.BYTES))
+                .order(ByteOrder.nativeOrder());
+        for (int i = 0; i < queued; i++) {
+            bigger.putInt(i * Integer.BYTES, queue.getInt(((head + i) % capacity) * Integer.BYTES));
+        }
+        queue = bigger;
+        return 0;
+    }
+
+    // view of a single cell, it holds no state of its own
+    private class Field extends AbstractObservableField {
+        private final int index;
+
+        Field(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void turn() {
+            rotate(index, true);
+            notifyObservers();
+        }
+
+        @Override
+        public void reverseTurn() {
+            rotate(index, false);
+            notifyObservers();
+        }
+
+        @Override
+        public boolean north() {
+            return (mask(index) & Side.NORTH.bit()) != 0;
+        }
+
+        @Override
+        public boolean east() {
+            return (mask(index) & Side.EAST.bit()) != 0;
+        }
+
+        @Override
+        public boolean south() {
+            return (mask(index) & Side.SOUTH.bit()) != 0;
+        }
+
+        @Override
+        public boolean west() {
+            return (mask(index) & Side.WEST.bit()) != 0;
+        }
+
+        @Override
+        public boolean light() {
+            refreshLight();
+            return lit(index);
+        }
+
+        @Override
+        public boolean isLink() {
+            return type(index) == BoardStore.TYPE_LINK;
+        }
+
+        @Override
+        public boolean isBulb() {
+            return type(index) == BoardStore.TYPE_BULB;
+        }
+
+        @Override
+        public boolean isPower() {
+            return type(index) == BoardStore.TYPE_POWER;
+        }
+    }
+}
@@ -0,0 +1,883 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Solver that finds a rotation for every node so that all bulbs are lit. Works on any board, it does not need the
+ * original layout of the level.
+ *
+ * Every node is a variable, its value is the set of sides light passes through (an empty set for fake nodes that are
+ * not part of the circuit). Only sets that fit into some rotation of the node are possible. Neighbours have to agree:
+ * a side is used exactly when the neighbour uses the side facing back, nothing is used towards the edge of the board
+ * or an empty cell. The values are filtered by arc consistency, the rest is found by backtracking on the node with
+ * the fewest values left, after every step all bulbs must still be able to reach the power node.
+ *
+ * Well formed levels connect every connector, so the solver first allows only whole connector masks. When that fails
+ * (older generated levels have dangling connectors) it searches again with any subset.
+ *
+ * solveParallel() splits the search over a ForkJoinPool: a task searches its part of the tree for a while and when it
+ * does not finish, it splits it by the values of one node into new tasks that idle workers steal. The first task that
+ * finds a solution stops all the others.
+ */
+
+import com.common.BoardStore;
+import com.common.Connectors;
+import com.common.GameNode;
+import com.common.Position;
+import com.common.Side;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Solver {
+    private static final int ROTATIONS = 4;
+    private static final int VALUES = 16; // every subset of the four sides
+    private static final long DEFAULT_DECISION_LIMIT = 1_000_000;
+    private static final long FIRST_RESTART = 100;
+    private static final long SPLIT_DECISIONS = 2000; // work of a parallel task before it splits its part of the tree
+    private static final long EAGER_SPLIT_DECISIONS = 50; // same when other workers may be idle
+    private static final int ALL_USED = 0;
+    private static final int WHOLE = 1;
+    private static final int RELAXED = 2;
+    // union and intersection of all side sets in a domain, the intersection of a domain with the empty set is empty
+    private static final byte[] ANY = new byte[1 << VALUES];
+    private static final byte[] ALL = new byte[1 << VALUES];
+
+    private static final int[] USING = new int[VALUES]; // values that use the side with the given bit
+
+    static {
+        for (int used = 0; used < VALUES; used++) {
+            for (int bit = 1; bit < VALUES; bit <<= 1) {
+                if ((used & bit) != 0) USING[bit] |= 1 << used;
+            }
+        }
+        for (int domain = 1; domain < ANY.length; domain++) {
+            int value = Integer.numberOfTrailingZeros(domain);
+            int rest = domain & (domain - 1);
+            ANY[domain] = (byte) (value | ANY[rest]);
+            ALL[domain] = (byte) (rest == 0 ? value : value & ALL[rest]);
+        }
+    }
+
+    private final int rows;
+    private final int cols;
+    private final int size;
+    private final byte[] types;
+    private final byte[] rotated; // mask of cell i after r clockwise turns at i * 4 + r
+    private final int[] wholeMasks; // domain of the whole connector masks of every cell
+    private final int[] domains; // bit u set when the cell may use exactly the sides u
+    private int powerIndex = -1;
+    private long decisionLimit = DEFAULT_DECISION_LIMIT;
+
+    private int[] trailCells = new int[64]; // previous domains, undone when backtracking
+    private int[] trailDomains = new int[64];
+    private int trailSize = 0;
+    private final int[] pending; // cells whose neighbours changed, ring buffer
+    private final boolean[] isPending;
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+    private final int[] reach; // work arrays of the reachability check and the bridge search
+    private final boolean[] reached;
+    private final int[] order;
+    private final int[] low;
+    private final int[] stack;
+    private final int[] nextSide;
+    private final int[] parent;
+    private final int[] depths;
+    private final int[] dfsOrder;
+    private final boolean[] required;
+    private final int[] weights; // failures caused by every cell, the search turns to where it keeps failing
+    private int conflict = -1;
+    private Shared shared; // set in the copies used by a parallel solve
+    private List<Solution> collected; // solutions found by findSolutions()
+
+    private final Stats stats = new Stats();
+
+    // state of a parallel solve shared by all its tasks
+    private static final class Shared {
+        private final AtomicBoolean done = new AtomicBoolean(); // solution found or limit reached
+        private final AtomicLong decisions;
+        private final AtomicLong backtracks = new AtomicLong();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicInteger tasks = new AtomicInteger();
+        private final long limit;
+        private volatile boolean limitReached;
+
+        private Shared(long decisions, long limit) {
+            this.decisions = new AtomicLong(decisions);
+            this.limit = limit;
+        }
+    }
+
+    // statistics of the last solve() or findSolutions(), also a rough measure of how hard the level is
+    public static final class Stats {
+        private int forcedNodes; // nodes fixed by propagation before any guess
+        private double openBits; // log2 of the value combinations left after that propagation
+        private int nodes; // nodes that were not empty
+        private long decisions;
+        private long backtracks;
+        private int maxDepth;
+        private boolean relaxed; // dangling connectors were needed
+        private boolean limitReached; // gave up, the board may still have a solution
+        private int tasks; // tasks of a parallel solve
+        private long nanos;
+
+        public int forcedNodes() { return forcedNodes; }
+
+        public double openBits() { return openBits; }
+
+        public int nodes() { return nodes; }
+
+        public long decisions() { return decisions; }
+
+        public long backtracks() { return backtracks; }
+
+        public int maxDepth() { return maxDepth; }
+
+        public boolean relaxed() { return relaxed; }
+
+        public boolean limitReached() { return limitReached; }
+
+        public int tasks() { return tasks; }
+
+        public long nanos() { return nanos; }
+
+        /*
+         * Difficulty of the level from 0 (propagation alone solves it) to 100: 40 for the part of the nodes that
+         * were not forced, 30 for the branching left (up to 2 bits per node) and 30 for the search, 2.5 points each
+         * time the decisions and backtracks double, up to 4096 of them.
+         */
+        public double score() {
+            if (nodes == 0) return 0;
+            double open = 1 - (double) forcedNodes / nodes;
+            double branching = Math.min(1, openBits / nodes / 2);
+            double search = Math.min(1, Math.log(1 + decisions + backtracks) / Math.log(2) / 12);
+            return 40 * open + 30 * branching + 30 * search;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("nodes=%d forced=%d decisions=%d backtracks=%d depth=%d%s%s%s time=%.2fms",
+                    nodes, forcedNodes, decisions, backtracks, maxDepth, tasks > 0 ? " tasks=" + tasks : "",
+                    relaxed ? " relaxed" : "", limitReached ? " limit" : "", nanos / 1e6);
+        }
+    }
+
+    // rotations of one solution, relative to the state of the board when the solver was created
+    public static final class Solution {
+        private final int cols;
+        private final int[] turns; // clockwise turns, -1 for cells that are not part of the circuit
+        private final byte[] masks;
+
+        private Solution(int cols, int[] turns, byte[] masks) {
+            this.cols = cols;
+            this.turns = turns;
+            this.masks = masks;
+        }
+
+        private int index(Position pos) {
+            return (pos.row() - 1) * cols + (pos.col() - 1);
+        }
+
+        // true when the node at pos carries light in this solution, fake nodes and empty cells do not
+        public boolean isActive(Position pos) {
+            return turns[index(pos)] >= 0;
+        }
+
+        // clockwise turns the node at pos needs, 0 for inactive nodes
+        public int turns(Position pos) {
+            return Math.max(0, turns[index(pos)]);
+        }
+
+        public Set<Side> connectors(Position pos) {
+            return Side.fromMask(masks[index(pos)]);
+        }
+
+        // turns every active node into its solved rotation, the game must still be in the state the solver saw
+        public void apply(Game game) {
+            game.beginBatch();
+            try {
+                for (int i = 0; i < turns.length; i++) {
+                    GameNode node = game.node(Position.of(i / cols + 1, i % cols + 1));
+                    for (int t = 0; t < turns[i]; t++) {
+                        node.turn();
+                    }
+                }
+            } finally {
+                game.commitBatch();
+            }
+        }
+    }
+
+    public Solver(Game game) {
+        this(game.rows(), game.cols(), new byte[game.rows() * game.cols()],
+                new byte[game.rows() * game.cols() * ROTATIONS], new int[game.rows() * game.cols()]);
+        for (GameNode node : game.nodes()) {
+            int i = index(node.getPosition().row(), node.getPosition().col());
+            int type = node.isPower() ? BoardStore.TYPE_POWER : node.isBulb() ? BoardStore.TYPE_BULB : BoardStore.TYPE_LINK;
+            types[i] = (byte) type;
+            if (type == BoardStore.TYPE_POWER) powerIndex = i;
+            int mask = node.connectorMask();
+            for (int r = 0; r < ROTATIONS; r++) {
+                rotated[i * ROTATIONS + r] = (byte) mask;
+                wholeMasks[i] |= 1 << mask; // a symmetric shape repeats its masks, the domain holds them once
+                mask = Connectors.rotateClockwise(mask);
+            }
+            stats.nodes++;
+        }
+    }
+
+    // copy for another task of a parallel solve, the board is shared, the search state is copied
+    private Solver(Solver other) {
+        this(other.rows, other.cols, other.types, other.rotated, other.wholeMasks);
+        this.powerIndex = other.powerIndex;
+        this.decisionLimit = other.decisionLimit;
+        this.shared = other.shared;
+        this.stats.nodes = other.stats.nodes;
+        System.arraycopy(other.domains, 0, domains, 0, size);
+        System.arraycopy(other.weights, 0, weights, 0, size);
+    }
+
+    private Solver(int rows, int cols, byte[] types, byte[] rotated, int[] wholeMasks) {
+        this.rows = rows;
+        this.cols = cols;
+        this.size = rows * cols;
+        this.types = types;
+        this.rotated = rotated;
+        this.wholeMasks = wholeMasks;
+        this.domains = new int[size];
+        this.pending = new int[size];
+        this.isPending = new boolean[size];
+        this.reach = new int[size];
+        this.reached = new boolean[size];
+        this.order = new int[size];
+        this.low = new int[size];
+        this.stack = new int[size];
+        this.nextSide = new int[size];
+        this.parent = new int[size];
+        this.depths = new int[size];
+        this.dfsOrder = new int[size];
+        this.required = new boolean[size];
+        this.weights = new int[size];
+    }
+
+    public Stats stats() {
+        return stats;
+    }
+
+    public long getDecisionLimit() {
+        return decisionLimit;
+    }
+
+    // bounds the work of one solve(), the relaxed search can take very long on boards without a solution
+    public void setDecisionLimit(long decisionLimit) {
+        this.decisionLimit = decisionLimit;
+    }
+
+    // finds a solution or returns null when there is none (or the limit was reached), the game is not changed
+    public Solution solve() {
+        return solve(null);
+    }
+
+    // same as solve(), the search is split over the workers of the common pool
+    public Solution solveParallel() {
+        return solveParallel(ForkJoinPool.commonPool());
+    }
+
+    public Solution solveParallel(ForkJoinPool pool) {
+        return solve(pool);
+    }
+
+    private Solution solve(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        stats.decisions = 0;
+        stats.backtracks = 0;
+        stats.maxDepth = 0;
+        stats.tasks = 0;
+        stats.limitReached = false;
+        stats.relaxed = false;
+        // the first try is cheap, it is not worth splitting
+        boolean solved = powerIndex >= 0 && search(ALL_USED, Math.min(decisionLimit, stats.nodes), null);
+        stats.limitReached = false;
+        if (!solved && powerIndex >= 0) solved = search(WHOLE, decisionLimit, pool);
+        if (!solved && powerIndex >= 0 && !stats.limitReached) {
+            stats.relaxed = true;
+            solved = search(RELAXED, decisionLimit, pool);
+        }
+        stats.nanos = System.nanoTime() - start;
+        return solved ? solution() : null;
+    }
+
+    /*
+     * Number of different minimal lit structures up to max, -1 when the limit was reached first. A structure is the
+     * set of sides every node needs to carry light through to light all bulbs; dangling connectors, lit branches
+     * that lead nowhere and nodes that are not needed are ignored, so rotations that only differ in those count
+     * once (a power node that wins as 11 and as 13 is one solution). Turning a symmetric link or a node that stays
+     * dark does not make a new one either. On levels whose solution is a tree that uses every connector of its
+     * nodes, as LevelGenerator grows them, a count of 1 means every winning rotation is the saved one up to such
+     * turns; LevelGenerator.setUniqueSolution() relies on that.
+     */
+    public int countSolutions(int max) {
+        List<Solution> solutions = findSolutions(max);
+        return stats.limitReached ? -1 : solutions.size();
+    }
+
+    /*
+     * For every node the only mask that carries light through the sides it needs in all solutions (as counted by
+     * countSolutions()), as far as the first propagation can tell without any search, -1 where it cannot tell (and
+     * for nodes that may stay dark). Such a mask is consistent with some solution, but not shared by every winning
+     * rotation: another rotation of the node can win too when it only differs in dangling or unneeded sides.
+     * Indexed like the BoardStore. Assumes whole connectors unless the board contradicts them, then any subset.
+     */
+    public byte[] forcedMasks() {
+        byte[] forced = new byte[size];
+        Arrays.fill(forced, (byte) -1);
+        if (powerIndex < 0 || !start(WHOLE) && !start(RELAXED)) return forced;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == BoardStore.TYPE_EMPTY || Integer.bitCount(domains[i]) != 1) continue;
+            int used = Integer.numberOfTrailingZeros(domains[i]);
+            // a single orientation has to cover the used sides, else any of them is right
+            int orientations = Connectors.orientations(rotated[i * ROTATIONS]);
+            for (int r = 0; r < orientations; r++) {
+                int mask = rotated[i * ROTATIONS + r];
+                if ((mask & used) != used) continue;
+                forced[i] = forced[i] == -1 ? (byte) mask : (byte) -2;
+            }
+            if (forced[i] == -2) forced[i] = -1;
+        }
+        return forced;
+    }
+
+    // up to max different solutions (as in countSolutions), stats().limitReached() tells if there may be more
+    public List<Solution> findSolutions(int max) {
+        long start = System.nanoTime();
+        stats.decisions = 0;
+        stats.backtracks = 0;
+        stats.maxDepth = 0;
+        stats.tasks = 0;
+        stats.limitReached = false;
+        stats.relaxed = true;
+        collected = new ArrayList<>();
+        if (powerIndex >= 0 && start(RELAXED)) searchFrom(decisionLimit, max);
+        List<Solution> solutions = collected;
+        collected = null;
+        stats.nanos = System.nanoTime() - start;
+        return solutions;
+    }
+
+    private Solution solution() {
+        int[] turns = new int[size];
+        byte[] masks = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int used = Integer.numberOfTrailingZeros(domains[i]);
+            turns[i] = -1;
+            if (types[i] == BoardStore.TYPE_EMPTY || used == 0) continue;
+            // the rotation that uses all connectors if there is one, else any rotation covering the used sides,
+            // the fewest turns among the ones that give the same state
+            for (int r = Connectors.orientations(rotated[i * ROTATIONS]) - 1; r >= 0; r--) {
+                int mask = rotated[i * ROTATIONS + r];
+                if ((mask & used) == used && (turns[i] < 0 || mask == used)) {
+                    turns[i] = r;
+                    masks[i] = (byte) mask;
+                }
+            }
+        }
+        return new Solution(cols, turns, masks);
+    }
+
+    private int index(int row, int col) {
+        return (row - 1) * cols + (col - 1);
+    }
+
+    // neighbour on the side with the given bit, -1 off the board
+    private int neighbour(int index, int bit) {
+        int col = index % cols;
+        return switch (bit) {
+            case 1 -> index >= cols ? index - cols : -1; // NORTH
+            case 2 -> col < cols - 1 ? index + 1 : -1; // EAST
+            case 4 -> index + cols < size ? index + cols : -1; // SOUTH
+            default -> col > 0 ? index - 1 : -1; // WEST
+        };
+    }
+
+    /*
+     * Values a cell starts with, relaxed allows subsets of a rotation. A link that passes light to a single side
+     * lights nothing else, such a solution stays valid without the link, so links use no side or at least two.
+     */
+    private int initialDomain(int index, int model) {
+        if (types[index] == BoardStore.TYPE_EMPTY) return 1; // uses nothing
+        int domain = wholeMasks[index];
+        if (model == ALL_USED) return domain;
+        if (model == RELAXED && types[index] != BoardStore.TYPE_BULB) {
+            for (int used = 1; used < VALUES; used++) {
+                if (types[index] == BoardStore.TYPE_LINK && Integer.bitCount(used) < 2) continue;
+                int orientations = Connectors.orientations(rotated[index * ROTATIONS]);
+                for (int r = 0; r < orientations; r++) {
+                    if ((rotated[index * ROTATIONS + r] & used) == used) domain |= 1 << used;
+                }
+            }
+        }
+        if (types[index] == BoardStore.TYPE_LINK) domain |= 1; // fake node
+        return domain;
+    }
+
+    private void setDomain(int index, int domain) {
+        if (trailSize == trailCells.length) {
+            trailCells = Arrays.copyOf(trailCells, trailSize * 2);
+            trailDomains = Arrays.copyOf(trailDomains, trailSize * 2);
+        }
+        trailCells[trailSize] = index;
+        trailDomains[trailSize++] = domains[index];
+        domains[index] = domain;
+        for (Side side : Connectors.SIDES) {
+            int next = neighbour(index, side.bit());
+            if (next >= 0 && types[next] != BoardStore.TYPE_EMPTY && !isPending[next]) {
+                isPending[next] = true;
+                pending[(pendingHead + pendingCount++) % size] = next;
+            }
+        }
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            domains[trailCells[trailSize]] = trailDomains[trailSize];
+        }
+    }
+
+    // removes values without support from the domain, false when nothing is left
+    private boolean revise(int index) {
+        int domain = domains[index];
+        int must = 0; // sides that have to be used
+        int mustNot = 0; // sides that must not
+        for (Side side : Connectors.SIDES) {
+            int bit = side.bit();
+            int next = neighbour(index, bit);
+            if (next < 0) {
+                mustNot |= bit;
+                continue;
+            }
+            int back = Connectors.opposite(bit);
+            if ((ANY[domains[next]] & back) == 0) mustNot |= bit;
+            if ((ALL[domains[next]] & back) != 0) must |= bit;
+        }
+        for (int used = 0; used < VALUES; used++) {
+            if ((domain & 1 << used) != 0 && ((used & mustNot) != 0 || (used & must) != must)) {
+                domain &= ~(1 << used);
+            }
+        }
+        if (domain != domains[index]) {
+            if (domain == 0) return false;
+            setDomain(index, domain);
+        }
+        return true;
+    }
+
+    private boolean propagate() {
+        while (pendingCount > 0) {
+            int index = pending[pendingHead];
+            pendingHead = (pendingHead + 1) % size;
+            pendingCount--;
+            isPending[index] = false;
+            if (!revise(index)) {
+                weights[index]++;
+                clearPending();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clearPending() {
+        while (pendingCount > 0) {
+            isPending[pending[pendingHead]] = false;
+            pendingHead = (pendingHead + 1) % size;
+            pendingCount--;
+        }
+    }
+
+    /*
+     * Inference over the whole board, repeated with arc consistency until nothing changes:
+     *  - only nodes connected to the power node can carry light, a node that cannot be reached any more through
+     *    sides that may be used is switched off, which in turn limits its neighbours
+     *  - a bulb with a single neighbour that can still light it must be lit from that neighbour
+     *  - a side on the only way to a node that has to be used (a bridge) must be used
+     * Bulbs do not pass the light on. Fails when a bulb or another node that has to be used cannot be reached.
+     */
+    private boolean prune() {
+        while (propagate()) {
+            Arrays.fill(reached, false);
+            int head = 0;
+            int tail = 0;
+            reach[tail++] = powerIndex;
+            reached[powerIndex] = true;
+            while (head < tail) {
+                int current = reach[head++];
+                if (types[current] == BoardStore.TYPE_BULB) continue;
+                int mask = ANY[domains[current]];
+                for (Side side : Connectors.SIDES) {
+                    int next = neighbour(current, side.bit());
+                    if ((mask & side.bit()) != 0 && next >= 0 && !reached[next]
+                            && (ANY[domains[next]] & Connectors.opposite(side.bit())) != 0) {
+                        reached[next] = true;
+                        reach[tail++] = next;
+                    }
+                }
+            }
+            boolean changed = false;
+            for (int i = 0; i < size; i++) {
+                if (reached[i] || domains[i] == 1) continue;
+                if ((domains[i] & 1) == 0) {
+                    weights[i]++;
+                    clearPending();
+                    return false;
+                }
+                setDomain(i, 1);
+                changed = true;
+            }
+            if (!changed) changed = forceBulbs() || forceBridges();
+            if (conflict >= 0) {
+                weights[conflict]++;
+                conflict = -1;
+                clearPending();
+                return false;
+            }
+            if (!changed) return true;
+        }
+        return false;
+    }
+
+    // true when light may pass from index over the side with the given bit
+    private boolean mayPass(int index, int bit) {
+        int next = neighbour(index, bit);
+        return next >= 0 && types[next] != BoardStore.TYPE_EMPTY && (ANY[domains[index]] & bit) != 0
+                && (ANY[domains[next]] & Connectors.opposite(bit)) != 0;
+    }
+
+    // both cells of a side have to use it
+    private boolean forceSide(int index, int bit) {
+        int next = neighbour(index, bit);
+        int domain = domains[index] & USING[bit];
+        int nextDomain = domains[next] & USING[Connectors.opposite(bit)];
+        if (domain == 0 || nextDomain == 0) {
+            conflict = domain == 0 ? index : next; // two forced sides the node cannot use together
+            return true;
+        }
+        boolean changed = false;
+        if (domain != domains[index]) {
+            setDomain(index, domain);
+            changed = true;
+        }
+        if (nextDomain != domains[next]) {
+            setDomain(next, nextDomain);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean forceBulbs() {
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            if (types[i] != BoardStore.TYPE_BULB || Integer.bitCount(domains[i]) == 1) continue;
+            int feeders = 0;
+            int feederSide = 0;
+            for (Side side : Connectors.SIDES) {
+                int next = neighbour(i, side.bit());
+                if (mayPass(i, side.bit()) && reached[next] && types[next] != BoardStore.TYPE_BULB) {
+                    feeders++;
+                    feederSide = side.bit();
+                }
+            }
+            if (feeders == 1) changed |= forceSide(i, feederSide);
+        }
+        return changed;
+    }
+
+    /*
+     * Tarjan's bridge search over the sides light may pass, without going through bulbs. A side is forced when the
+     * part behind it has no other way to the power node and contains a node that has to be used, or all the
+     * neighbours a bulb can be lit from.
+     */
+    private boolean forceBridges() {
+        Arrays.fill(order, 0);
+        int visited = 0;
+        int top = 0;
+        stack[top++] = powerIndex;
+        dfsOrder[visited++] = powerIndex;
+        order[powerIndex] = visited;
+        low[powerIndex] = visited;
+        nextSide[powerIndex] = 0;
+        parent[powerIndex] = -1;
+        depths[powerIndex] = 0;
+        while (top > 0) {
+            int current = stack[top - 1];
+            if (nextSide[current] == Connectors.SIDES.length) {
+                top--;
+                if (parent[current] >= 0) low[parent[current]] = Math.min(low[parent[current]], low[current]);
+                continue;
+            }
+            int bit = Connectors.SIDES[nextSide[current]++].bit();
+            if (!mayPass(current, bit)) continue;
+            int next = neighbour(current, bit);
+            if (types[next] == BoardStore.TYPE_BULB) continue;
+            if (order[next] == 0) {
+                dfsOrder[visited++] = next;
+                order[next] = visited;
+                low[next] = visited;
+                nextSide[next] = 0;
+                parent[next] = current;
+                depths[next] = depths[current] + 1;
+                stack[top++] = next;
+            } else if (next != parent[current]) {
+                low[current] = Math.min(low[current], order[next]);
+            }
+        }
+
+        for (int k = 0; k < visited; k++) {
+            int cell = dfsOrder[k];
+            required[cell] = (domains[cell] & 1) == 0;
+        }
+        // a bulb needs one of its feeders, all of them hang below their common ancestor
+        for (int i = 0; i < size; i++) {
+            if (types[i] != BoardStore.TYPE_BULB) continue;
+            int ancestor = -1;
+            for (Side side : Connectors.SIDES) {
+                int next = neighbour(i, side.bit());
+                if (mayPass(i, side.bit()) && order[next] != 0) {
+                    ancestor = ancestor < 0 ? next : commonAncestor(ancestor, next);
+                }
+            }
+            if (ancestor >= 0) required[ancestor] = true;
+        }
+        // children come after their parent in the DFS order
+        boolean changed = false;
+        for (int k = visited - 1; k > 0; k--) {
+            int cell = dfsOrder[k];
+            int up = parent[cell];
+            if (required[cell] && low[cell] > order[up]) {
+                for (Side side : Connectors.SIDES) {
+                    if (neighbour(up, side.bit()) == cell) changed |= forceSide(up, side.bit());
+                }
+            }
+            // every way from the part below to the power node goes through up, so up has to carry light
+            if (required[cell] && low[cell] >= order[up] && (domains[up] & 1) != 0) {
+                if (domains[up] == 1) {
+                    conflict = up;
+                    return true;
+                }
+                setDomain(up, domains[up] & ~1);
+                changed = true;
+            }
+            required[up] |= required[cell];
+        }
+        return changed;
+    }
+
+    private int commonAncestor(int a, int b) {
+        while (depths[a] > depths[b]) a = parent[a];
+        while (depths[b] > depths[a]) b = parent[b];
+        while (a != b) {
+            a = parent[a];
+            b = parent[b];
+        }
+        return a;
+    }
+
+    /*
+     * Undecided node with the fewest values left compared to the failures around it, -1 when every node is decided.
+     * Nodes that have to carry light go first, their guesses cut off the most.
+     */
+    private int chooseNode() {
+        int best = -1;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            int count = Integer.bitCount(domains[i]);
+            if (count < 2) continue;
+            int weight = 1 + weights[i];
+            for (Side side : Connectors.SIDES) {
+                int next = neighbour(i, side.bit());
+                if (next >= 0) weight += weights[next];
+            }
+            double score = ((domains[i] & 1) == 0 ? 0 : VALUES) + (double) count / weight;
+            if (score < bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // whole connector masks first, then not using the node at all, then the biggest subsets
+    private int nextValue(int index, int untried) {
+        int whole = untried & wholeMasks[index];
+        if (whole != 0) return Integer.numberOfTrailingZeros(whole);
+        if ((untried & 1) != 0) return 0;
+        int best = Integer.numberOfTrailingZeros(untried);
+        for (int used = best + 1; used < VALUES; used++) {
+            if ((untried & 1 << used) != 0 && Integer.bitCount(used) > Integer.bitCount(best)) best = used;
+        }
+        return best;
+    }
+
+    private boolean search(int model, long limit, ForkJoinPool pool) {
+        if (!start(model)) return false;
+        if (pool == null) return searchFrom(limit, 1) == 1;
+
+        shared = new Shared(stats.decisions, limit);
+        Solver found = pool.invoke(new Branch(new Solver(this), 0));
+        stats.decisions = shared.decisions.get();
+        stats.backtracks += shared.backtracks.get();
+        stats.maxDepth = Math.max(stats.maxDepth, shared.maxDepth.get());
+        stats.tasks += shared.tasks.get();
+        stats.limitReached = shared.limitReached;
+        shared = null;
+        if (found == null) return false;
+        System.arraycopy(found.domains, 0, domains, 0, size);
+        return true;
+    }
+
+    // domains of the model after the first propagation, false when the board has no solution in it
+    private boolean start(int model) {
+        trailSize = 0;
+        for (int i = 0; i < size; i++) {
+            domains[i] = initialDomain(i, model);
+            if (types[i] != BoardStore.TYPE_EMPTY) {
+                isPending[i] = true;
+                pending[(pendingHead + pendingCount++) % size] = i;
+            }
+        }
+        if (!prune()) return false;
+        stats.forcedNodes = 0;
+        stats.openBits = 0;
+        for (int i = 0; i < size; i++) {
+            if (types[i] == BoardStore.TYPE_EMPTY) continue;
+            int values = Integer.bitCount(domains[i]);
+            if (values == 1) stats.forcedNodes++;
+            else stats.openBits += Math.log(values) / Math.log(2);
+        }
+        return true;
+    }
+
+    /*
+     * Backtracking from the current domains until it finds the wanted number of solutions, returns how many it
+     * found. The domains hold the last one found when it stops at the first. Stops when the decisions reach the
+     * limit (or another task of a parallel solve finished), stats.limitReached tells it from a part of the board
+     * without more solutions. Restarts would find the same solutions again, so only the search for one uses them.
+     */
+    private int searchFrom(long limit, int wanted) {
+        stats.limitReached = false;
+        int found = 0;
+        // explicit stack of guesses, so big boards do not run out of stack
+        int[] nodes = new int[stats.nodes];
+        int[] untried = new int[stats.nodes];
+        int[] marks = new int[stats.nodes];
+        int rootMark = trailSize;
+        int depth = 0;
+        int lastConflict = -1;
+        long restartGap = FIRST_RESTART;
+        long restartAt = wanted == 1 ? stats.decisions + restartGap : Long.MAX_VALUE;
+        while (true) {
+            if (stats.decisions >= restartAt) {
+                undo(rootMark);
+                depth = 0;
+                lastConflict = -1;
+                restartGap += restartGap / 2;
+                restartAt = stats.decisions + restartGap;
+            }
+            // after a dead end the node that had no value left is tried again first, close to the real cause
+            int node = lastConflict >= 0 && Integer.bitCount(domains[lastConflict]) > 1 ? lastConflict : chooseNode();
+            lastConflict = -1;
+            if (node < 0) {
+                if (collected != null) collected.add(solution());
+                if (++found == wanted) return found;
+            } else {
+                nodes[depth] = node;
+                untried[depth] = domains[node];
+                marks[depth] = trailSize;
+                depth++;
+                stats.maxDepth = Math.max(stats.maxDepth, depth);
+            }
+            boolean descended = false;
+            while (depth > 0 && !descended) {
+                int top = depth - 1;
+                undo(marks[top]);
+                if (untried[top] == 0) {
+                    lastConflict = nodes[top];
+                    depth--;
+                    continue;
+                }
+                if (stats.decisions >= limit || shared != null && shared.done.get()) {
+                    undo(rootMark);
+                    stats.limitReached = true;
+                    return found;
+                }
+                if (shared != null && shared.decisions.incrementAndGet() > shared.limit) {
+                    shared.limitReached = true;
+                    shared.done.set(true);
+                }
+                int value = nextValue(nodes[top], untried[top]);
+                untried[top] &= ~(1 << value);
+                stats.decisions++;
+                setDomain(nodes[top], 1 << value);
+                descended = prune();
+                if (!descended) stats.backtracks++;
+            }
+            if (!descended) {
+                undo(rootMark);
+                return found;
+            }
+        }
+    }
+
+    /*
+     * Task of a parallel solve over its own copy of the solver. It searches for a while, when its part of the tree is
+     * not done by then, it is split by the values of the node the search would pick first. A task running while
+     * other workers may be idle splits sooner, so all of them get work from the start.
+     */
+    // fork-join tasks are serializable, but a branch never leaves the pool that runs it
+    private static final class Branch extends RecursiveTask<Solver> {
+        private static final long serialVersionUID = 1L;
+        private final transient Solver solver;
+        private final int depth; // splits above this task
+
+        private Branch(Solver solver, int depth) {
+            this.solver = solver;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Solver compute() {
+            Shared shared = solver.shared;
+            shared.tasks.incrementAndGet();
+            if (shared.done.get()) return null;
+            long budget = getSurplusQueuedTaskCount() > 0 ? SPLIT_DECISIONS : EAGER_SPLIT_DECISIONS;
+            boolean solved = solver.searchFrom(solver.stats.decisions + budget, 1) == 1;
+            shared.backtracks.addAndGet(solver.stats.backtracks);
+            shared.maxDepth.accumulateAndGet(depth + solver.stats.maxDepth, Math::max);
+            if (solved) {
+                shared.done.set(true);
+                return solver;
+            }
+            if (!solver.stats.limitReached || shared.done.get()) return null;
+
+            int node = solver.chooseNode();
+            List<Branch> branches = new ArrayList<>();
+            for (int rest = solver.domains[node]; rest != 0; rest &= rest - 1) {
+                Solver copy = new Solver(solver);
+                copy.setDomain(node, rest & -rest);
+                if (copy.prune()) branches.add(new Branch(copy, depth + 1));
+            }
+            invokeAll(branches);
+            for (Branch branch : branches) {
+                Solver found = branch.join();
+                if (found != null) return found;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Measures how long the Solver needs for random boards of different sizes. Run without the GUI:
+ *   java -cp target/classes com.game.SolverBenchmark [boards per size] [decision limit] [parallel board size]
+ * Boards are random trees from a power node, leaves are bulbs and every node is turned randomly. The tree either
+ * covers the whole grid or most of it with fake links in the remaining cells (like the Hard difficulty).
+ * The second table solves the same boards with solveParallel() on pools of 1, 2, 4, ... workers up to the number
+ * of cores, the speedup is against a single worker.
+ */
+
+import com.common.BoardStore;
+import com.common.Connectors;
+import com.common.Position;
+import com.common.Side;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SolverBenchmark {
+    private static final int[] SIZES = {8, 20, 50};
+    private static final double[] TREE_COVER = {1.0, 0.8};
+    private static final double PARALLEL_COVER = 0.9;
+
+    public static void main(String[] args) {
+        int boards = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long limit = args.length > 1 ? Long.parseLong(args[1]) : 50_000;
+        int parallelSize = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        Random random = new Random(42);
+        // warm up the JIT so the first size is not measured in the interpreter
+        for (int i = 0; i < 20; i++) {
+            new Solver(randomBoard(8, 8, 0.8, random)).solve();
+        }
+        System.out.println("size   fakes  boards  solved   median ms     max ms  decisions  backtracks");
+        for (double cover : TREE_COVER) {
+            for (int n : SIZES) {
+                run(n, cover, boards, limit, random);
+            }
+        }
+        speedup(parallelSize, boards, limit, random);
+    }
+
+    private static void speedup(int n, int boards, long limit, Random random) {
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i < boards; i++) {
+            games.add(randomBoard(n, n, PARALLEL_COVER, random));
+        }
+        System.out.printf("%nparallel, %dx%d with fakes, %d boards%n", n, n, boards);
+        System.out.println("workers  solved   total ms  speedup      tasks");
+        int cores = Runtime.getRuntime().availableProcessors();
+        long single = 0;
+        for (int workers = 1; workers <= cores; workers = workers == cores ? cores + 1 : Math.min(workers * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            long total = 0;
+            long tasks = 0;
+            int solved = 0;
+            for (Game game : games) {
+                Solver solver = new Solver(game);
+                solver.setDecisionLimit(limit);
+                if (solver.solveParallel(pool) != null) solved++;
+                total += solver.stats().nanos();
+                tasks += solver.stats().tasks();
+            }
+            pool.shutdown();
+            if (workers == 1) single = total;
+            System.out.printf("%7d  %6d  %9.2f  %7.2f  %9d%n", workers, solved, total / 1e6, (double) single / total,
+                    tasks / boards);
+        }
+    }
+
+    private static void run(int n, double cover, int boards, long limit, Random random) {
+        long[] times = new long[boards];
+        long decisions = 0;
+        long backtracks = 0;
+        int solved = 0;
+        for (int i = 0; i < boards; i++) {
+            Game game = randomBoard(n, n, cover, random);
+            Solver solver = new Solver(game);
+            solver.setDecisionLimit(limit);
+            Solver.Solution solution = solver.solve();
+            times[i] = solver.stats().nanos();
+            decisions += solver.stats().decisions();
+            backtracks += solver.stats().backtracks();
+            if (solution != null) {
+                solution.apply(game);
+                if (game.isWon()) solved++;
+            }
+        }
+        Arrays.sort(times);
+        System.out.printf("%-6s %5s  %6d  %6d  %10.2f  %9.2f  %9d  %10d%n", n + "x" + n, cover < 1 ? "yes" : "no",
+                boards, solved, times[boards / 2] / 1e6, times[boards - 1] / 1e6, decisions / boards,
+                backtracks / boards);
+    }
+
+    // random tree grown from the power node by adding a random neighbour of a random tree cell
+    static Game randomBoard(int rows, int cols, double cover, Random random) {
+        Game game = new Game(rows, cols);
+        int size = rows * cols;
+        int[] masks = new int[size];
+        boolean[] inTree = new boolean[size];
+        int[] tree = new int[size];
+        int treeSize = 0;
+        int power = random.nextInt(size);
+        inTree[power] = true;
+        tree[treeSize++] = power;
+        int target = (int) (size * cover);
+        int attempts = 0;
+        while (treeSize < target && attempts++ < size * 50) {
+            int cell = tree[random.nextInt(treeSize)];
+            if (cell == power && masks[power] != 0) continue; // the power node has a single connector
+            Side side = Connectors.SIDES[random.nextInt(4)];
+            int next = neighbour(cell, side, rows, cols);
+            if (next < 0 || inTree[next]) continue;
+            masks[cell] |= side.bit();
+            masks[next] |= Connectors.opposite(side.bit());
+            inTree[next] = true;
+            tree[treeSize++] = next;
+        }
+        for (int cell = 0; cell < size; cell++) {
+            Position pos = Position.of(cell / cols + 1, cell % cols + 1);
+            int mask = masks[cell];
+            if (cell == power) {
+                game.createPowerNode(pos, Side.fromMask(mask).toArray(new Side[0]));
+            } else if (inTree[cell] && Connectors.count(mask) == 1) {
+                game.createBulbNode(pos, Side.fromMask(mask).iterator().next());
+            } else if (inTree[cell]) {
+                game.createLinkNode(pos, Side.fromMask(mask).toArray(new Side[0]));
+            } else {
+                // fake link with two or three connectors
+                int fake = Connectors.SIDES[random.nextInt(4)].bit();
+                fake |= Connectors.rotateClockwise(fake) | (random.nextBoolean() ? Connectors.opposite(fake) : 0);
+                game.createLinkNode(pos, Side.fromMask(fake).toArray(new Side[0]));
+            }
+        }
+        game.beginBatch();
+        for (int type = BoardStore.TYPE_POWER; type <= BoardStore.TYPE_LINK; type++) {
+            game.nodesOfType(type).forEach(node -> {
+                for (int t = random.nextInt(4); t > 0; t--) node.turn();
+            });
+        }
+        game.commitBatch();
+        game.init();
+        return game;
+    }
+
+    private static int neighbour(int cell, Side side, int rows, int cols) {
+        int row = cell / cols;
+        int col = cell % cols;
+        return switch (side) {
+            case NORTH -> row > 0 ? cell - cols : -1;
+            case SOUTH -> row < rows - 1 ? cell + cols : -1;
+            case WEST -> col > 0 ? cell - 1 : -1;
+            case EAST -> col < cols - 1 ? cell + 1 : -1;
+        };
+    }
+}
@@ -5,24 +5,58 @@ package com.tool;
  */
 
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 public abstract class AbstractObservableField implements ToolField {
-    private final Set<Observer> observers = new HashSet();
+    private static final Observer[] NO_OBSERVERS = new Observer[0];
+    // most fields have a single observer (the game), a plain array is much lighter than a set
+    private Observer[] observers = NO_OBSERVERS;
+    private int heldUpdates = 0;
+    private boolean changed = false;
 
     public AbstractObservableField() {
     }
 
     public void addObserver(Observable.Observer var1) {
-        this.observers.add(var1);
+        for (Observer observer : this.observers) {
+            if (observer == var1) return;
+        }
+        this.observers = Arrays.copyOf(this.observers, this.observers.length + 1);
+        this.observers[this.observers.length - 1] = var1;
     }
 
     public void removeObserver(Observable.Observer var1) {
-        this.observers.remove(var1);
+        for (int i = 0; i < this.observers.length; i++) {
+            if (this.observers[i] == var1) {
+                Observer[] rest = new Observer[this.observers.length - 1];
+                System.arraycopy(this.observers, 0, rest, 0, i);
+                System.arraycopy(this.observers, i + 1, rest, i, rest.length - i);
+                this.observers = rest;
+                return;
+            }
+        }
+    }
+
+    public void beginUpdate() {
+        heldUpdates++;
+    }
+
+    public void endUpdate() {
+        if (heldUpdates == 0) throw new IllegalStateException("endUpdate() without beginUpdate()");
+        heldUpdates--;
+        if (heldUpdates == 0 && changed) {
+            changed = false;
+            notifyObservers();
+        }
     }
 
     public void notifyObservers() {
-        this.observers.forEach((var1) -> var1.update(this));
+        if (heldUpdates > 0) {
+            changed = true;
+            return;
+        }
+        for (Observer observer : this.observers) {
+            observer.update(this);
+        }
     }
 }
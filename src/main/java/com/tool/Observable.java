@@ -11,6 +11,12 @@ public interface Observable {
 
     void notifyObservers();
 
+    // Between beginUpdate() and endUpdate() notifications are held back, the observers are notified once when
+    // the outermost endUpdate() is called and something changed in the meantime. Calls can be nested.
+    void beginUpdate();
+
+    void endUpdate();
+
     public interface Observer {
         void update(Observable var1);
     }
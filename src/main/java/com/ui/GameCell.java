@@ -4,6 +4,7 @@ package com.ui;
  * This class is for visual representation of a game cell in the GUI.
  */
 
+import com.common.Connectors;
 import com.common.GameNode;
 import com.common.Position;
 import com.common.Side;
@@ -30,15 +31,15 @@ public class GameCell extends Pane {
     private final GameNode node;
     private final Runnable refreshCallback;
     private final GameLogger logger;
-    private final int rotationNeeded;
+    private final int turnsNeeded; // clockwise turns to the solution state, 0 hides the hint
     private final boolean isSolutionNode;
 
-    public GameCell(GameNode node,  Runnable refreshCallback, GameLogger logger, int rotationNeeded,
+    public GameCell(GameNode node,  Runnable refreshCallback, GameLogger logger, int turnsNeeded,
                     boolean isSolutionNode) {
         this.node = node;
         this.refreshCallback = refreshCallback;
         this.logger = logger;
-        this.rotationNeeded = rotationNeeded;
+        this.turnsNeeded = turnsNeeded;
         this.isSolutionNode = isSolutionNode;
         setPrefSize(SIZE, SIZE);
         setStyle("-fx-border-color: #444; -fx-border-width: 1px;");
@@ -52,14 +53,9 @@ public class GameCell extends Pane {
         // Draw connectors
         drawConnectors();
 
-        if (isSolutionNode && rotationNeeded != 0) {
-            int rotationsToShow = rotationNeeded;
-            // Handle symmetric nodes (opposite connectors)
-            if (isSymmetricNode()) {
-                if (rotationsToShow == 2) return ;
-                rotationsToShow = 3;
-            }
-            addRotationIndicator(rotationsToShow);
+        // symmetric nodes need fewer turns, see Connectors.turnsBetween()
+        if (isSolutionNode && turnsNeeded > 0) {
+            addRotationIndicator(turnsNeeded);
         }
 
         if (node.isBulb()) {
@@ -159,9 +155,11 @@ public class GameCell extends Pane {
     }
 
     private void drawConnectors() {
-        for (Side side : node.getConnectors()) {
-            Line connector = createConnectorLine(side, node.light());
-            getChildren().add(connector);
+        int mask = node.connectorMask();
+        for (Side side : Connectors.SIDES) {
+            if ((mask & side.bit()) != 0) {
+                getChildren().add(createConnectorLine(side, node.light()));
+            }
         }
     }
 
@@ -202,8 +200,14 @@ public class GameCell extends Pane {
         return line;
     }
 
-    private void addRotationIndicator(int rotationNeeded) {
-        Label indicator = new Label(String.valueOf((4 - rotationNeeded) % 4));
+    // marks the cell as the next move of a hint, until the grid is drawn again
+    public void showHint(int turnsNeeded) {
+        setStyle("-fx-border-color: #444; -fx-border-width: 1px; -fx-background-color: #ffffcc;");
+        if (turnsNeeded > 0) addRotationIndicator(turnsNeeded);
+    }
+
+    private void addRotationIndicator(int turnsNeeded) {
+        Label indicator = new Label(String.valueOf(turnsNeeded));
         indicator.setStyle("-fx-font-weight: bold; -fx-font-size: 16; -fx-text-fill: gray;");
         indicator.setLayoutX(SIZE - 15);  // Position in top-right corner
         indicator.setLayoutY(3);
@@ -214,17 +218,12 @@ public class GameCell extends Pane {
         setOnMouseClicked(event -> {
             if(event.getButton() == MouseButton.PRIMARY) {
                 node.turn();
-                if(logger != null) {
-                    Position pos = node.getPosition();
+                Position pos = node.getPosition();
+                if(logger != null && pos != null) { // the shared empty node of a sparse game has no position
                     logger.logMove(pos);
                 }
                 refreshCallback.run();
             }
         });
     }
-
-    private boolean isSymmetricNode() {
-        // Check if node has exactly 2 opposite connectors
-        return node.getConnectors().size() == 2 && ((node.north() && node.south()) || (node.east() && node.west()));
-    }
 }
@@ -4,6 +4,9 @@ package com.ui;
  * This class represents the level selection menu in the game. For the user to select a level to play. 
  */
 
+import com.utils.GameLogger;
+import com.utils.LogState;
+
 import javafx.scene.Parent;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -23,7 +26,6 @@ import javafx.scene.control.TableColumn;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.List;
 
 
 public class LevelSelectionMenu {
@@ -81,6 +83,7 @@ public class LevelSelectionMenu {
 
                 try {
                     // Delete .log file
+                    GameLogger.awaitWrites(); // the writer must not create it again
                     Path logPath = Paths.get("data", "log", "Random", levelName + ".log");
                     Files.deleteIfExists(logPath);
 
@@ -103,16 +106,15 @@ public class LevelSelectionMenu {
             if (files != null) {
                 for (File file : files) {
 
-                    List<String> lines = null;
+                    LogState saved;
                     try {
-                        lines = Files.readAllLines(file.toPath());
+                        saved = LogState.read(file.toPath()); // text or binary
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
                     String name = file.getName().replace(".log", "");
-                    String layoutSize = lines.stream().filter(l -> l.startsWith("grid:")).findFirst().orElse("grid:[?,?]").replace("grid:[", "").replace("]", "").replace(",","x");
-                    String diffLine = lines.stream().filter(l -> l.startsWith("difficulty:")).findFirst().orElse("difficulty: ?");
-                    String levelDiff = diffLine.substring("difficulty:".length()).trim();
+                    String layoutSize = saved.hasGrid() ? saved.rows() + "x" + saved.cols() : "?x?";
+                    String levelDiff = saved.difficulty() != null ? saved.difficulty() : "?";
 
                     table.getItems().add(new LevelInfo(name, layoutSize, levelDiff));
                 }
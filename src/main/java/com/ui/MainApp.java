@@ -15,16 +15,22 @@ import java.util.*;
 
 import com.common.GameNode;
 import com.common.Position;
-import com.common.Side;
 import com.game.Game;
+import com.game.HintEngine;
 import com.game.LevelGenerator;
 import com.game.LevelLoader;
+import com.game.LevelPool;
+import com.game.Solver;
 import com.utils.GameLogger;
+import com.utils.LogState;
 
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -37,6 +43,16 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 
 public class MainApp extends Application {
+    // custom levels generated in the background, LEVEL_POOL_SIZE ready per size and difficulty
+    private static final int LEVEL_POOL_SIZE = 2;
+    private static final long LEVEL_POOL_MAX_BYTES = 16L * 1024 * 1024;
+    private static final long PREFILL_DELAY_MILLIS = 500; // quiet time after the last edit of the size
+    // the logs are written by a background writer at most this often, the timer ticks every second
+    private static final long LOG_FLUSH_MILLIS = 2000;
+    private static final boolean BINARY_LOGS = true; // see com.utils.BinaryLogWriter, text logs are still read
+    // a resumed level replays at most LOG_CHECKPOINT_RECORDS records, LOG_UNDO_DEPTH moves stay undoable
+    private static final int LOG_CHECKPOINT_RECORDS = 200;
+    private static final int LOG_UNDO_DEPTH = 1000;
     private Game game;
     private Stage primaryStage;
     private StackPane root;
@@ -46,15 +62,18 @@ public class MainApp extends Application {
     private String currentDifficulty;
     //time label
     private Label timeLabel;
+    private Label bulbsLabel;
     private long startTime;
     private Timeline timer;
     private Button undoButton;
     private Button redoButton;
     private boolean showHint = false;
     private Timeline hintTimer;
+    private HintEngine hintEngine; // follows the current game, made on the first hint
     private boolean isRandomLevel = false;
     private Difficulty selectedRandomDifficulty = null;
     private final LevelGenerator levelGenerator = new LevelGenerator(); // Instantiate LevelGenerator
+    private final LevelPool levelPool = new LevelPool(LEVEL_POOL_SIZE, LEVEL_POOL_MAX_BYTES);
 
     @Override
     public void start(Stage primaryStage) {
@@ -64,10 +83,18 @@ public class MainApp extends Application {
         primaryStage.setTitle("Light Circuit");
         primaryStage.setScene(scene);
         animationHelper = new AnimationHelper(root); 
+        levelPool.setUniqueSolution(true); // hints compare against the one saved solution
         showMenu();
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        levelPool.shutdown();
+        if (logger != null) logger.close();
+        GameLogger.awaitWrites(); // the writer is a daemon thread, it would not finish on its own
+    }
+
     private void showMenu() {
         MenuView menu = new MenuView(
             difficulty -> showLevelSelection(difficulty, "right"),
@@ -119,23 +146,50 @@ public class MainApp extends Application {
         }
     }
 
+    // shows how many bulbs are lit, the game keeps the counters so this is cheap to call after every move
+    private void updateBulbsLabel() {
+        if (bulbsLabel != null) {
+            bulbsLabel.setText("Bulbs: " + game.litBulbs() + "/" + game.totalBulbs());
+        }
+    }
+
     private String formatTime(long millis) {
         long seconds = millis / 1000;
         return String.format("%02d:%02d", seconds / 60, seconds % 60);
     }
 
-    private static String extractActualDifficulty(List<String> logLines, String defaultDifficulty) {
-        return logLines.stream()
-                .filter(line -> line.startsWith("difficulty:"))
-                .map(line -> line.substring("difficulty:".length()).trim())
-                .findFirst()
-                .orElse(defaultDifficulty);
+    private static String extractActualDifficulty(LogState saved, String defaultDifficulty) {
+        return saved.difficulty() != null ? saved.difficulty() : defaultDifficulty;
+    }
+    // logger that writes on the background writer, so the FX thread never waits for the disk. saved is null for a
+    // new log
+    private GameLogger newLogger(String difficulty, int levelNumber, String actualDifficulty, LogState saved) {
+        GameLogger newLogger = new GameLogger(difficulty, levelNumber, actualDifficulty, saved, LOG_FLUSH_MILLIS);
+        newLogger.setBinaryFormat(BINARY_LOGS);
+        newLogger.setCheckpointInterval(LOG_CHECKPOINT_RECORDS);
+        newLogger.setUndoDepth(LOG_UNDO_DEPTH);
+        return newLogger;
     }
+
     // this function loads the level and applies the moves from the log file
     private void loadLevel(String difficulty, int levelNumber) {
+        // the log is read on the log writer once the log of the level played before is written, then the level is
+        // built on the FX thread
+        GameLogger.readLog(GameLogger.logPath(difficulty, levelNumber)).whenComplete((saved, error) ->
+                Platform.runLater(() -> {
+                    if (error != null) {
+                        System.err.println("Error loading level: " + error.getMessage());
+                        showMenu();
+                    } else {
+                        showLevel(difficulty, levelNumber, saved);
+                    }
+                }));
+    }
+
+    // saved is the log of the level, null when it has none
+    private void showLevel(String difficulty, int levelNumber, LogState saved) {
         try {
             this.currentDifficulty = difficulty; 
-            Path logPath = Paths.get("data", "log", difficulty, "level" + levelNumber + ".log");
             String filePath = String.format("data/level_layout/%s/level%d.txt", difficulty.toLowerCase(), levelNumber);
 
             Game originalGame = null;
@@ -149,15 +203,10 @@ public class MainApp extends Application {
                 System.err.println("Failed to load original level for hints: " + e.getMessage());
             }
 
-            if (Files.exists(logPath)){
-                List<String> logLines = Files.readAllLines(logPath);
-                if (logLines.size() <= 4 &&
-                logLines.stream().anyMatch(line -> line.startsWith("grid:")) &&
-                logLines.stream().anyMatch(line -> line.startsWith("time:")) &&
-                logLines.stream().anyMatch(line -> line.startsWith("accumulated:")) &&
-                logLines.stream().anyMatch(line-> line.startsWith("difficulty:"))
-                ) {
-                    String actualDiff = extractActualDifficulty(logLines, difficulty); // Replaced with function call
+            if (saved != null){
+                // only the header is left after a win, the level starts over
+                if (saved.hasGrid() && saved.difficulty() != null && !saved.hasNodes() && saved.recordCount() == 0) {
+                    String actualDiff = extractActualDifficulty(saved, difficulty); // Replaced with function call
                     game = LevelLoader.loadLevel(filePath);
                     LevelGenerator.scrambleLinks(game);
 
@@ -169,20 +218,16 @@ public class MainApp extends Application {
                     }
                     game.recalculateLight(); // optional, in case links affect lighting
 
-                    logger = new GameLogger(difficulty, levelNumber, actualDiff);
+                    logger = newLogger(difficulty, levelNumber, actualDiff, saved);
                     logger.logNodeStates(game);
 
-                    String timeLine = logLines.stream().filter(line -> line.startsWith("time:")).findFirst().orElse("time: ");
-                    long oldBestTime = 0;
-                    if(timeLine.length() > 6){
-                        oldBestTime = Long.parseLong(timeLine.substring(6).trim());
-                        logger.saveBestTime(oldBestTime);
+                    if (saved.bestTime() != LogState.NO_TIME) {
+                        logger.saveBestTime(saved.bestTime());
                     }
                 }else{
-                    game = LevelLoader.loadLevel(logPath.toString());
-                    String actualDiff = extractActualDifficulty(logLines, difficulty);
-                    logger = new GameLogger(difficulty, levelNumber, actualDiff);
-                    applyLoggedMoves(game, logger);
+                    game = LevelLoader.resumeLevel(saved); // last checkpoint and the moves after it
+                    String actualDiff = extractActualDifficulty(saved, difficulty);
+                    logger = newLogger(difficulty, levelNumber, actualDiff, saved);
                 }
             } else {
                 game = LevelLoader.loadLevel(filePath);
@@ -193,13 +238,15 @@ public class MainApp extends Application {
 
                 levelGenerator.addFakesNodes(game, actualDifficultyEnum);
                 game.recalculateLight(); // optional, in case links affect lighting
-                logger = new GameLogger(difficulty, levelNumber, difficulty);
+                logger = newLogger(difficulty, levelNumber, difficulty, null);
                 logger.logNodeStates(game);
             }
 
             // copy solution state from original level
             if(originalGame != null){
                 game.copySolutionState(originalGame);
+            } else {
+                solveInBackground(game); // no original layout, let the solver find the hints
             }
 
             this.backActionOnWin = () -> showLevelSelection(difficulty, "left");
@@ -210,6 +257,23 @@ public class MainApp extends Application {
         }
     }
 
+    // the solver can take a while on big or hard levels, the hints get its solution once it is done
+    private void solveInBackground(Game level) {
+        Solver solver = new Solver(level); // copies the board, the player can turn nodes in the meantime
+        Task<Solver.Solution> task = new Task<>() {
+            @Override
+            protected Solver.Solution call() {
+                return solver.solve();
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (task.getValue() != null) level.saveSolutionState(task.getValue());
+        });
+        Thread thread = new Thread(task, "level-solver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     // this function creates the game layout with all functionality
     private BorderPane createGameLayout() {
         BorderPane mainLayout = new BorderPane(); 
@@ -220,6 +284,8 @@ public class MainApp extends Application {
 
         timeLabel = new Label("Time: 00:00");
         Label bestTimeLabel = new Label("Best: " + (logger != null ? logger.getBestTimeFormatted() : "--"));
+        bulbsLabel = new Label();
+        updateBulbsLabel();
 
         undoButton = new Button("Undo");
         redoButton = new Button("Redo");
@@ -236,7 +302,14 @@ public class MainApp extends Application {
         // hinButton.setDisable(currentDifficulty == null); // Disable if no level is loaded
         hinButton.setOnAction(e-> {
             if (hintTimer != null) hintTimer.stop(); // Reset timer on re-click
-    
+
+            // a move the deduction found first, only its cell is marked, no solution needed
+            Position move = hintEngine().nextMove();
+            if (move != null) {
+                showMoveHint(move);
+                return;
+            }
+            // nothing is forced anymore, flash the saved solution
             showHint = true;
             refreshGrid();
             
@@ -257,14 +330,14 @@ public class MainApp extends Application {
 
         for(int r = 1; r<=game.rows(); r++){
             for(int c = 1; c<=game.cols(); c++){
-                Position pos = new Position(r, c);
+                Position pos = Position.of(r, c);
                 GameNode node = game.node(pos);
                 boolean isSolutionNode = game.getSolutionNodes().contains(pos);
                 GameCell cell = new GameCell(
                         node,
                         this::refreshGrid,
                         logger,
-                        showHint ? node.getRotations() : 0,
+                        showHint ? game.turnsToSolution(pos) : 0,
                         isSolutionNode);
                 gameGrid.add(cell, c-1, r-1);
             }
@@ -289,13 +362,29 @@ public class MainApp extends Application {
         BorderPane.setMargin(backButton, new Insets(10));
 
         // Add components to main layout
-        topPanel.getChildren().addAll(timeLabel, bestTimeLabel, backButton, undoButton, redoButton, hinButton);
+        topPanel.getChildren().addAll(timeLabel, bestTimeLabel, bulbsLabel, backButton, undoButton, redoButton, hinButton);
         updateUndoRedoButtons();
         mainLayout.setCenter(gameGrid);
         mainLayout.setTop(topPanel); 
         return mainLayout;
     }
 
+    private HintEngine hintEngine() {
+        if (hintEngine == null || hintEngine.getGame() != game) {
+            if (hintEngine != null) hintEngine.detach();
+            hintEngine = new HintEngine(game);
+        }
+        return hintEngine;
+    }
+
+    // marks the cell of the move with the turns it needs, the mark goes away with the next refresh
+    private void showMoveHint(Position move) {
+        BorderPane currentLayout = (BorderPane) root.getChildren().get(0);
+        GridPane gameGrid = (GridPane) currentLayout.getCenter();
+        int index = (move.row() - 1) * game.cols() + (move.col() - 1); // the cells are added row by row
+        ((GameCell) gameGrid.getChildren().get(index)).showHint(hintEngine.turnsNeeded(move));
+    }
+
     // this function updates the undo and redo buttons
     private void updateUndoRedoButtons() {
         undoButton.setDisable(logger == null || logger.isUndoEmpty());
@@ -307,8 +396,7 @@ public class MainApp extends Application {
             Position pos = logger.undoLastMove();
             if (pos != null) {
                 GameNode node = game.node(pos);
-                if (node != null) node.reverseTurn();
-                game.recalculateLight();
+                if (node != null) node.reverseTurn(); // the game updates the light on every turn
                 refreshGrid();
                 updateUndoRedoButtons();
             }
@@ -321,7 +409,6 @@ public class MainApp extends Application {
             if (pos != null) {
                 GameNode node = game.node(pos);
                 if (node != null) node.turn();
-                game.recalculateLight();
                 refreshGrid();
                 updateUndoRedoButtons();
             }
@@ -338,22 +425,6 @@ public class MainApp extends Application {
         primaryStage.setTitle("Light Circuit - Game");
     }
 
-    // this function applies the moves from the log file
-    public void applyLoggedMoves(Game game, GameLogger logger) {
-        List<Position> moves = logger.getMoves();
-        while(!logger.isUndoEmpty()) logger.undoLastMove();
-
-        for (Position move : moves) {
-            GameNode node = game.node(move);
-            if (node != null && !node.isEmpty()) {
-                node.turn(); // Simulate the player's move
-                //re-add the move to the logger
-                logger.logMove(move);
-            }
-        }
-
-        game.recalculateLight(); // Recompute lighting after all turns
-    }
     // this function defines behavior on the exit of the level 
     private void handleLevelExit() {
         boolean allowSave = true;
@@ -370,7 +441,7 @@ public class MainApp extends Application {
             else{
                 allowSave = false;
                 try{
-                    Files.deleteIfExists(logger.getLogPath());
+                    logger.deleteLog();
 
                     int levelNumber = logger.getLevelNumber();
                     Path layoutPath = Paths.get("data", "level_layout", "random", "level" + levelNumber + ".txt");
@@ -384,14 +455,14 @@ public class MainApp extends Application {
         if (allowSave && logger != null && currentDifficulty != null) {
             long elapsed = System.currentTimeMillis() - startTime;
             logger.saveAccumulatedTime(elapsed);
-            logger.clearStack();
-            logger.logNodeStates(game); // Save current node states
+            logger.checkpoint(); // the moves stay undoable when the level is resumed
+            logger.flush();
         }
     }
 
     // refreshes the grid, updates the game state and checks for win condition
     private void refreshGrid() {
-        game.recalculateLight();
+        // light is already up to date, the game recalculates it whenever a node turns
         if (game.isWon()) {
             if (timer != null) {
                 handleLevelExit();
@@ -401,6 +472,7 @@ public class MainApp extends Application {
                 long elapsedTime = System.currentTimeMillis() - startTime;
                 logger.saveBestTime(elapsedTime);
                 logger.clear();
+                logger.flush();
             }
             if(backActionOnWin != null) {
                 animationHelper.animateSwitchTo(backActionOnWin, "left");
@@ -415,21 +487,20 @@ public class MainApp extends Application {
             gameGrid.getChildren().clear();
             for (int r = 1; r <= game.rows(); r++) {
                 for (int c = 1; c <= game.cols(); c++) {
-                    Position pos = new Position(r, c);
+                    Position pos = Position.of(r, c);
                     GameNode node = game.node(pos);
                     boolean isSolutionNode = game.getSolutionNodes().contains(pos);
                     GameCell cell = new GameCell(
                             node,
                             this::refreshGrid,
                             logger,
-                            showHint ? node.getRotations() : 0,
+                            showHint ? game.turnsToSolution(pos) : 0,
                             isSolutionNode);
 
                     if(showHint){
                         if(game.getSolutionNodes().contains(pos)){
-                            Set<Side> expected = game.getSolutionConnectors(pos);
-
-                            if (expected != null && !expected.equals(node.getConnectors())) {
+                            // any state of a symmetric node that looks like the solution is correct
+                            if (game.turnsToSolution(pos) != 0) {
                                 cell.setStyle("-fx-background-color: #ffcccc;"); // wrong rotation
                             } else {
                                 cell.setStyle("-fx-background-color: #ccffcc;"); // correct rotation
@@ -441,6 +512,7 @@ public class MainApp extends Application {
                 }
             }
             updateUndoRedoButtons();
+            updateBulbsLabel();
         }
     }
 
@@ -468,6 +540,26 @@ public class MainApp extends Application {
         Label errorLabel = new Label();
         errorLabel.setStyle("-fx-text-fill: red;");
 
+        // the pool starts on a level once the input is complete and has not changed for a moment, so typing "12"
+        // does not queue a level of size 1 first. It is usually ready before Start is pressed
+        PauseTransition prefillDelay = new PauseTransition(Duration.millis(PREFILL_DELAY_MILLIS));
+        prefillDelay.setOnFinished(event -> {
+            try {
+                int rows = Integer.parseInt(rowField.getText());
+                int cols = Integer.parseInt(colField.getText());
+                Difficulty difficulty = difficultyComboBox.getValue();
+                if (rows >= 2 && cols >= 2 && rows <= 20 && cols <= 20 && difficulty != null) {
+                    levelPool.prefill(rows, cols, difficulty);
+                }
+            } catch (NumberFormatException ignored) {
+                // not complete yet
+            }
+        });
+        rowField.textProperty().addListener((obs, oldText, newText) -> prefillDelay.playFromStart());
+        colField.textProperty().addListener((obs, oldText, newText) -> prefillDelay.playFromStart());
+        difficultyComboBox.valueProperty().addListener((obs, oldValue, newValue) -> prefillDelay.playFromStart());
+
+        GridPane grid = new GridPane();
         startButton.setOnAction(e -> {
             try {
                 int rows = Integer.parseInt(rowField.getText());
@@ -482,21 +574,22 @@ public class MainApp extends Application {
                     errorLabel.setText("Please select a difficulty level.");
                     return;
                 }
-                LevelGenerator generator = new LevelGenerator();
+                prefillDelay.stop(); // the pool builds the level right away when it does not have it ready
                 int randomLevelNum = getNextRandomLevelNumber();
-                game = generator.generateLevel(rows, cols, difficulty, randomLevelNum);
-
-                this.selectedRandomDifficulty = difficulty;
-                this.currentDifficulty = "Random";
-                isRandomLevel = true;
-
-                logger = new GameLogger("Random", randomLevelNum, difficulty.name());
-
-                startTimer();
-                this.backActionOnWin = this::showMenu;
-
-                animationHelper.animateSwitchTo(() -> root.getChildren().setAll(createGameLayout()), "right");
-                primaryStage.setTitle("Light Circuit - Custom Game");
+                errorLabel.setText("");
+                startButton.setDisable(true);
+                startButton.setText("Generating...");
+                levelPool.take(rows, cols, difficulty, randomLevelNum).whenComplete((generated, error) ->
+                        Platform.runLater(() -> {
+                            startButton.setDisable(false);
+                            startButton.setText("Start Game");
+                            if (error != null) {
+                                errorLabel.setText("Failed to generate the level.");
+                                return;
+                            }
+                            if (!root.getChildren().contains(grid)) return; // went back while it was generated
+                            startCustomGame(generated, difficulty, randomLevelNum);
+                        }));
             } catch (NumberFormatException ex) {
                 errorLabel.setText("Please enter valid integers.");
             }
@@ -505,7 +598,6 @@ public class MainApp extends Application {
         Button backButton = new Button("Back");
         backButton.setOnAction(e -> animationHelper.animateSwitchTo(this::showMenu, "left"));
 
-        GridPane grid = new GridPane();
         grid.setHgap(10);
         grid.setVgap(10);
         grid.setAlignment(Pos.CENTER);
@@ -523,6 +615,23 @@ public class MainApp extends Application {
         animationHelper.animateSwitchTo(() -> root.getChildren().setAll(grid), "right");
     }
 
+    // shows a generated custom level, the log follows the board from the start
+    private void startCustomGame(Game generated, Difficulty difficulty, int randomLevelNum) {
+        game = generated;
+        this.selectedRandomDifficulty = difficulty;
+        this.currentDifficulty = "Random";
+        isRandomLevel = true;
+
+        logger = newLogger("Random", randomLevelNum, difficulty.name(), null);
+        logger.logNodeStates(game);
+
+        startTimer();
+        this.backActionOnWin = this::showMenu;
+
+        animationHelper.animateSwitchTo(() -> root.getChildren().setAll(createGameLayout()), "right");
+        primaryStage.setTitle("Light Circuit - Custom Game");
+    }
+
     private int getNextRandomLevelNumber() {
         File dir = Paths.get("data", "log", "Random").toFile();
         if (!dir.exists()) dir.mkdirs();
@@ -0,0 +1,114 @@
+package com.utils;
+/*
+ * author: xstahl01
+ * Reads the level logs written by BinaryLogWriter, versions 1 and 2. A record cut off at the end of the file (the
+ * game was closed in the middle of an append) is ignored, everything before it is kept.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class BinaryLogReader {
+    private final byte[] data;
+    private int pos;
+
+    private BinaryLogReader(byte[] data) {
+        this.data = data;
+    }
+
+    // looks at the magic bytes only, text logs start with a header line
+    public static boolean isBinary(Path path) throws IOException {
+        byte[] head = new byte[BinaryLogWriter.MAGIC.length];
+        try (InputStream in = Files.newInputStream(path)) {
+            if (in.readNBytes(head, 0, head.length) < head.length) return false;
+        }
+        return isBinary(head);
+    }
+
+    public static boolean isBinary(byte[] data) {
+        if (data.length < BinaryLogWriter.MAGIC.length) return false;
+        for (int i = 0; i < BinaryLogWriter.MAGIC.length; i++) {
+            if (data[i] != BinaryLogWriter.MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    public static LogState read(Path path) throws IOException {
+        return read(Files.readAllBytes(path));
+    }
+
+    public static LogState read(byte[] data) throws IOException {
+        if (!isBinary(data)) throw new IOException("Not a binary level log");
+        BinaryLogReader reader = new BinaryLogReader(data);
+        reader.pos = BinaryLogWriter.MAGIC.length;
+        int version = reader.data[reader.pos++];
+        if (version < 1 || version > BinaryLogWriter.VERSION) throw new IOException("Unsupported log version " + version);
+        return reader.readState(version);
+    }
+
+    private LogState readState(int version) throws IOException {
+        int rows = (int) readVarLong();
+        int cols = (int) readVarLong();
+        if (rows < 0 || cols < 0 || (long) rows * cols > data.length) throw new IOException("Broken log header");
+        LogState state = new LogState(rows, cols);
+        state.binary = true;
+        long bestTime = readVarLong();
+        state.setBestTime(bestTime == 0 ? LogState.NO_TIME : bestTime - 1);
+        state.setAccumulatedTime(readVarLong());
+        int difficulty = (int) readVarLong();
+        if (difficulty > 0) {
+            need(difficulty - 1);
+            state.setDifficulty(new String(data, pos, difficulty - 1, StandardCharsets.UTF_8));
+            pos += difficulty - 1;
+        }
+        need(rows * cols);
+        System.arraycopy(data, pos, state.cells(), 0, rows * cols);
+        pos += rows * cols;
+        int cells = rows * cols;
+        int moveCode = version == 1 ? 2 : BinaryLogWriter.CODE_MOVE;
+        while (pos < data.length) {
+            int start = pos;
+            long code = readUnsigned();
+            if (code < 0) break; // cut off
+            if (code == BinaryLogWriter.CODE_UNDO) {
+                state.addRecord(LogState.UNDO);
+            } else if (code == BinaryLogWriter.CODE_REDO) {
+                state.addRecord(LogState.REDO);
+            } else if (code < moveCode) {
+                if (pos + cells > data.length) break; // cut off
+                state.setCheckpoint(Arrays.copyOfRange(data, pos, pos + cells));
+                pos += cells;
+            } else {
+                if (code - moveCode >= cells) throw new IOException("Move outside of the board at byte " + start);
+                state.addRecord((int) (code - moveCode));
+            }
+        }
+        return state;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = readUnsigned();
+        if (value < 0) throw new IOException("Log ends inside its header");
+        return value;
+    }
+
+    // -1 when the data ends before the last byte of the number
+    private long readUnsigned() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= data.length) return -1;
+            byte b = data[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        return -1;
+    }
+
+    private void need(int bytes) throws IOException {
+        if (bytes < 0 || pos + bytes > data.length) throw new IOException("Log ends inside its header");
+    }
+}
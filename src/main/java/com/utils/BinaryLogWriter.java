@@ -0,0 +1,130 @@
+package com.utils;
+/*
+ * author: xstahl01
+ * Writes level logs in the binary format, version 2:
+ *   magic 0x89 'L' 'C' 'L', version byte
+ *   rows, cols (varints), best time + 1 (varlong, 0 = none), accumulated time (varlong padded to TIME_BYTES)
+ *   difficulty length + 1 (varint, 0 = none) and its UTF-8 bytes
+ *   rows * cols cell bytes (see LogState), then the journal records as varints up to the end:
+ *   0 undo, 1 redo, 2 checkpoint followed by rows * cols cell bytes, cell index + 3 a move
+ * Records can be appended to a written log, so the format works as the journal of GameLogger as well. The accumulated
+ * time always takes TIME_BYTES bytes (continuation bytes of zeros), so GameLogger can overwrite it in place.
+ * Version 1 had no checkpoints and moves were cell index + 2, BinaryLogReader still reads it.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class BinaryLogWriter {
+    static final byte[] MAGIC = {(byte) 0x89, 'L', 'C', 'L'};
+    static final int VERSION = 2;
+    static final int CODE_UNDO = 0;
+    static final int CODE_REDO = 1;
+    static final int CODE_CHECKPOINT = 2;
+    static final int CODE_MOVE = 3; // added to the cell index
+    static final int TIME_BYTES = 9; // 63 bits, any time fits
+
+    private byte[] buffer = new byte[64];
+    private int size;
+    private int timeOffset = -1;
+
+    public static void write(Path path, LogState state) throws IOException {
+        Files.write(path, new BinaryLogWriter().writeState(state).toByteArray());
+    }
+
+    // header, cells and records of the state
+    public BinaryLogWriter writeState(LogState state) {
+        ensure(MAGIC.length + 1);
+        System.arraycopy(MAGIC, 0, buffer, size, MAGIC.length);
+        size += MAGIC.length;
+        buffer[size++] = VERSION;
+        writeVarLong(state.rows());
+        writeVarLong(state.cols());
+        writeVarLong(state.bestTime() == LogState.NO_TIME ? 0 : state.bestTime() + 1);
+        timeOffset = size;
+        ensure(TIME_BYTES);
+        System.arraycopy(timeField(state.accumulatedTime()), 0, buffer, size, TIME_BYTES);
+        size += TIME_BYTES;
+        if (state.difficulty() == null) {
+            writeVarLong(0);
+        } else {
+            byte[] text = state.difficulty().getBytes(StandardCharsets.UTF_8);
+            writeVarLong(text.length + 1);
+            ensure(text.length);
+            System.arraycopy(text, 0, buffer, size, text.length);
+            size += text.length;
+        }
+        byte[] cells = state.cells();
+        ensure(cells.length);
+        System.arraycopy(cells, 0, buffer, size, cells.length);
+        size += cells.length;
+        for (int i = 0; i <= state.recordCount(); i++) {
+            if (state.checkpoint() != null && i == state.checkpointAt()) writeCheckpoint(state.checkpoint());
+            if (i < state.recordCount()) writeRecord(state.record(i));
+        }
+        return this;
+    }
+
+    // a cell index, LogState.UNDO or LogState.REDO
+    public BinaryLogWriter writeRecord(int record) {
+        if (record == LogState.UNDO) writeVarLong(CODE_UNDO);
+        else if (record == LogState.REDO) writeVarLong(CODE_REDO);
+        else writeVarLong(record + (long) CODE_MOVE);
+        return this;
+    }
+
+    // the cells of the whole board, see LogState.setCheckpoint()
+    public BinaryLogWriter writeCheckpoint(byte[] cells) {
+        writeVarLong(CODE_CHECKPOINT);
+        ensure(cells.length);
+        System.arraycopy(cells, 0, buffer, size, cells.length);
+        size += cells.length;
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // where writeState() put the accumulated time, -1 before it
+    public int timeOffset() {
+        return timeOffset;
+    }
+
+    // the accumulated time as it is stored in the header, a varlong of always TIME_BYTES bytes
+    public static byte[] timeField(long time) {
+        byte[] field = new byte[TIME_BYTES];
+        long value = Math.max(0, time);
+        for (int i = 0; i < TIME_BYTES; i++) {
+            field[i] = (byte) (value & 0x7F | (i < TIME_BYTES - 1 ? 0x80 : 0));
+            value >>>= 7;
+        }
+        return field;
+    }
+
+    public void reset() {
+        size = 0;
+        timeOffset = -1;
+    }
+
+    // 7 bits per byte, the high bit says another byte follows
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void ensure(int more) {
+        if (size + more > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + more));
+    }
+}
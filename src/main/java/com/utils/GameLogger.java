@@ -1,19 +1,44 @@
 package com.utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.common.BoardStore;
+import com.common.Connectors;
 import com.common.Position;
 import com.game.Game;
 /*
  * author: xstahl01
  * This class handles all the logging of game moves, time, and node states.
+ * In journal mode (the default) a move, undo or redo is appended to the log as one record ("r,c", "undo", "redo")
+ * instead of rewriting the whole file, the file is rewritten only by checkpoint() and the other full saves. The
+ * accumulated time has a fixed width in both formats, so the timer overwrites it in place instead of rewriting.
+ * In write-behind mode nothing is written on the calling (FX) thread: the logger only remembers what is dirty and a
+ * single background writer shared by all loggers writes it once per flush interval, so many time ticks and moves
+ * end up in one write.
+ * Logs can also be kept in the binary format (see BinaryLogWriter), a binary log is recognised on load and stays
+ * binary; setBinaryFormat() converts the log on its next full write.
+ * Once the logger knows the nodes it follows the board itself, so every checkpointInterval records it appends a
+ * checkpoint (a copy of the whole board) and a resumed level only replays the records after the last one. A full
+ * rewrite compacts the journal: the moves older than undoDepth are folded into the node states, the rest is kept
+ * for undo and redo and a checkpoint of the current board ends the log.
  */
 
 
-public class GameLogger {
+// final: the constructor already hands the logger to the background writer (markDirty()), a subclass would be
+// seen there before its own fields are set
+public final class GameLogger {
     private final Path logPath;
     private final boolean enableLogging;
     private final List<String> lines = new ArrayList<>();
@@ -28,36 +53,105 @@ public class GameLogger {
     private Deque<Position> redoStack = new ArrayDeque<>();
     private List<String> nodeStates = new ArrayList<>();
 
-
+    private static final String UNDO_RECORD = "undo";
+    private static final String REDO_RECORD = "redo";
+    private boolean journalMode = true;
+    private FileChannel journal; // kept open between appends and time updates, closed by every full rewrite
+    private int journalRecords; // records appended since the last full rewrite, lines does not have them
+    private static final String ACCUMULATED = "accumulated: ";
+    private static final int TIME_DIGITS = 13; // the text log keeps the accumulated time zero-padded to this width
+    private static final long MAX_INLINE_TIME = 9_999_999_999_999L; // longer times need a full rewrite
+    private long timeOffset = -1; // where the last full write put the accumulated time, -1 before it
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<GameLogger> DIRTY = ConcurrentHashMap.newKeySet(); // loggers with unwritten changes
+    private long flushInterval; // write-behind: changes reach the file at most this many ms later, 0 writes at once
+    // changes the writer has not written yet, both guarded by this
+    private boolean rewritePending; // lines have to be written as a whole
+    private final List<String> pendingRecords = new ArrayList<>(); // records to append after that
+    private boolean timePending; // the accumulated time has to be overwritten
+    private boolean flushScheduled;
+
+    private boolean binaryFormat; // full writes use the binary format once the grid size is known
+    private boolean fileBinary; // format of the file after the pending writes, the records are appended in it
+    private int fileCols; // columns of the binary file, the cell index of a record depends on them
+
+    private static final int CHECKPOINTS_PER_SEGMENT = 8; // appended checkpoints before the journal is compacted
+    private byte[] cells; // the board after all moves as LogState cells, null while the logger does not know it
+    private int gridCols;
+    private int checkpointInterval; // records between two checkpoints, 0 appends none
+    private int undoDepth = Integer.MAX_VALUE; // moves a compaction keeps for undo
+    private int sinceCheckpoint; // records since the last checkpoint
+    private int checkpoints; // checkpoints appended since the last full rewrite
+
+    // reads the log itself and writes on the calling thread, see the other constructor for write-behind
     public GameLogger(String difficulty, int levelNumber, String actualdifficulty){
+        this(difficulty, levelNumber, actualdifficulty, existingLog(difficulty, levelNumber), 0);
+    }
+
+    /*
+     * saved is the log read by readLog() before, null starts a new log. With a flush interval the logger is in
+     * write-behind mode from the start (see setWriteBehind()) and does not touch the disk on the calling thread.
+     */
+    public GameLogger(String difficulty, int levelNumber, String actualdifficulty, LogState saved,
+                      long flushIntervalMillis){
         this.enableLogging = (difficulty != null);
         this.difficulty = difficulty;
         this.actualdifficulty = actualdifficulty;
         this.levelNumber = levelNumber;
-        
+        this.flushInterval = Math.max(0, flushIntervalMillis);
+
         if(enableLogging){
-            this.logPath = Paths.get("data", "log", difficulty, "level" + levelNumber + ".log");
-            try {
-                Files.createDirectories(logPath.getParent());
-                
-                if(Files.notExists(logPath)) {
-                    initializeNewLog(difficulty);
-                } else {
-                    loadExistingLog();
-                }
-                validateLogStructure();
-            } catch (IOException e){
-                e.printStackTrace();
+            this.logPath = logPath(difficulty, levelNumber);
+            if (saved == null) {
+                initializeNewLog(difficulty);
+            } else {
+                loadLog(saved);
             }
+            validateLogStructure();
         }
         else {
             this.logPath = null;
         }
     }
 
+    public static Path logPath(String difficulty, int levelNumber) {
+        return Paths.get("data", "log", difficulty, "level" + levelNumber + ".log");
+    }
+
+    /*
+     * Reads a log on the background writer, after everything the loggers were asked to write before, so the log of
+     * the level played before is complete. Completes with null when there is no log.
+     */
+    public static CompletableFuture<LogState> readLog(Path path) {
+        return CompletableFuture.supplyAsync(() -> {
+            for (GameLogger logger : List.copyOf(DIRTY)) logger.writePending();
+            try {
+                return Files.exists(path) ? LogState.read(path) : null; // text or binary
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, WRITER);
+    }
+
+    private static LogState existingLog(String difficulty, int levelNumber) {
+        if (difficulty == null) return null;
+        try {
+            return readLog(logPath(difficulty, levelNumber)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     /** NODE LOGGING */
-    private void initializeNewLog(String difficulty) throws IOException {
-        Files.createFile(logPath);
+    private void initializeNewLog(String difficulty) {
         if(difficulty.equals("Easy")){
             lines.add("grid:[4,4]");
         }else if (difficulty.equals("Medium")){
@@ -66,76 +160,66 @@ public class GameLogger {
             lines.add("grid:[8,8]");
         }
         lines.add("time: ");
-        lines.add("accumulated: 0");
+        lines.add(accumulatedLine(0));
         lines.add("difficulty: " + actualdifficulty);
 
         if (!nodeStates.isEmpty()) {
             lines.addAll(nodeStates);
         }
-        save();
     }
 
-    private void loadExistingLog() throws IOException {
-        // Read all lines and separate node states from other data
-        List<String> allLines = Files.readAllLines(logPath);
-        
-        for(String line : allLines) {
-            String trimmed = line.trim();
-            if(trimmed.isEmpty()) continue;
-            
-            if(trimmed.startsWith("grid:")){
-                gridSize= trimmed;
-            }
-            if(trimmed.startsWith("time: ")) {
-                handleTimeLine(trimmed);
-            } else if(trimmed.startsWith("accumulated: ")) {
-                handleAccumulatedLine(trimmed);
-            } else if (trimmed.startsWith("difficulty: ")) {
-                this.difficulty = trimmed.substring(11).trim();
-            } else if (trimmed.matches("\\{[A-Z]\\[\\d+@\\d+\\].*}")) { // Matches {E[1@1][]}, {P[2@2][SOUTH]}, etc.
-                nodeStates.add(trimmed);
-            } else if(trimmed.matches("\\d+,\\d+")) { 
-                handleMoveLine(trimmed);
+    // takes over a saved log, text or binary, it is written again in the current structure
+    private void loadLog(LogState state) {
+        binaryFormat = state.isBinary();
+        if (state.hasGrid()) gridSize = "grid:[" + state.rows() + "," + state.cols() + "]";
+        bestTime = state.bestTime();
+        accumulatedTime = state.accumulatedTime();
+        if (state.difficulty() != null) this.difficulty = state.difficulty();
+        nodeStates.addAll(state.nodeLines());
+        for (int i = 0; i < state.recordCount(); i++) {
+            int record = state.record(i);
+            if (record == LogState.UNDO) {
+                if (!undoStack.isEmpty()) redoStack.push(undoStack.pop());
+            } else if (record == LogState.REDO) {
+                if (!redoStack.isEmpty()) undoStack.push(redoStack.pop());
+            } else {
+                undoStack.push(Position.of(record / state.cols() + 1, record % state.cols() + 1));
+                redoStack.clear(); // a journaled move after an undo, as in logMove()
             }
         }
-        
-        lines.addAll(allLines);
-    }
-
-    private void handleAccumulatedLine(String line) {
-        String timePart = line.substring(13).trim();
-        if(!timePart.isEmpty()) accumulatedTime = Long.parseLong(timePart);
-    }
-
-    private void handleMoveLine(String line) {
-        String[] parts = line.split(",");
-        int row = Integer.parseInt(parts[0]);
-        int col = Integer.parseInt(parts[1]);
-        undoStack.push(new Position(row, col));
+        if (state.hasGrid() && state.hasNodes()) { // the board the moves lead to
+            cells = state.currentCells();
+            gridCols = state.cols();
+        }
+        rebuildLogStructure();
     }
 
     private void validateLogStructure() {
         boolean hasTime = false;
         boolean hasAccumulated = false;
         
-        for(String line : lines) {
+        for(int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
             if(line.startsWith("time: ")) hasTime = true;
-            if(line.startsWith("accumulated: ")) hasAccumulated = true;
+            if(line.startsWith(ACCUMULATED)) {
+                hasAccumulated = true;
+                lines.set(i, accumulatedLine(accumulatedTime)); // older logs do not have the fixed width yet
+            }
         }
         
         if(!hasTime) lines.add(0, "time: ");
-        if(!hasAccumulated) lines.add(1, "accumulated: 0");
+        if(!hasAccumulated) lines.add(1, accumulatedLine(0));
         save();
     }
 
-    public void logNodeStates(Game game) {
+    public synchronized void logNodeStates(Game game) {
         if(!enableLogging) return;
         
         // Clear existing node states
         lines.removeIf(line -> line.matches("\\{[A-Z]\\[\\d+@\\d+\\].*}"));
         nodeStates.clear();
         
-        List<String> currentStates = game.getBoard().values().stream()
+        List<String> currentStates = game.nodes().stream()
             .filter(node -> !node.toString().startsWith("E")) // Exclude empty nodes
             .map(node -> {
                 Position pos = node.getPosition();
@@ -143,7 +227,7 @@ public class GameLogger {
                 String details = node.toString().split("\\[")[2].replaceAll("[\\[\\]]", "");
                 if (details.equals("}")) details = "";
 
-                int rotations = node.getRotations();
+                int rotations = node.normalizedRotations(); // the same state is always logged the same way
 
                 return String.format("{%s[%d@%d][%s][%d]}", type, pos.row(), pos.col(), details, rotations);
             })
@@ -153,6 +237,8 @@ public class GameLogger {
         lines.addAll(currentStates);
         
         gridSize = "grid:[" + game.rows() + "," + game.cols() + "]";
+        cells = snapshot(game); // the board the next moves turn
+        gridCols = game.cols();
 
     
         // Rebuild full log structure
@@ -168,26 +254,66 @@ public class GameLogger {
             newLines.add(gridSize);
         }
         newLines.add("time: " + (bestTime == Long.MAX_VALUE ? "" : bestTime));
-        newLines.add("accumulated: " + accumulatedTime);
+        newLines.add(accumulatedLine(accumulatedTime));
         if(difficulty != null){
             newLines.add("difficulty: " + actualdifficulty);
         }
+        if (cells != null) compactHistory();
         // Node states
         newLines.addAll(nodeStates);
         
         // Moves from undo stack (in chronological order)
         undoStack.descendingIterator()
                 .forEachRemaining(pos -> newLines.add(pos.row() + "," + pos.col()));
+        if (cells != null) {
+            // the moves that can be redone, then undone again, so the redo stack comes back on load
+            redoStack.forEach(pos -> newLines.add(pos.row() + "," + pos.col()));
+            redoStack.forEach(pos -> newLines.add(UNDO_RECORD));
+            newLines.add(LogState.checkpointLine(cells));
+            sinceCheckpoint = 0;
+            checkpoints = 0;
+        }
         
         lines.clear();
         lines.addAll(newLines);
     }
 
-    public void logMove(Position pos) {
+    // drops the moves older than undoDepth, the node states become the board before the oldest kept move
+    private void compactHistory() {
+        if (undoStack.size() <= undoDepth) return;
+        while (undoStack.size() > undoDepth) undoStack.removeLast();
+        byte[] base = cells.clone();
+        for (Position pos : undoStack) turnCell(base, pos, -1); // newest first
+        nodeStates.clear();
+        nodeStates.addAll(LogState.nodeLines(base, gridCols));
+    }
+
+    // the board as LogState cells, rotations counted as logNodeStates() counts them
+    private static byte[] snapshot(Game game) {
+        BoardStore store = game.getStore();
+        byte[] snapshot = new byte[store.size()];
+        for (int index = 0; index < snapshot.length; index++) {
+            int type = store.type(index);
+            if (type == BoardStore.TYPE_EMPTY) continue;
+            int mask = store.mask(index);
+            snapshot[index] = (byte) (type << 6 | mask << 2 | store.rotation(index) % Connectors.orientations(mask));
+        }
+        return snapshot;
+    }
+
+    private void turnCell(byte[] board, Position pos, int turns) {
+        if (pos.row() < 1 || pos.col() < 1 || pos.col() > gridCols) return;
+        int index = (pos.row() - 1) * gridCols + pos.col() - 1;
+        if (index >= board.length) return;
+        board[index] = (byte) LogState.turned(board[index] & 0xFF, turns);
+    }
+
+    public synchronized void logMove(Position pos) {
         undoStack.push(pos);
         redoStack.clear();
+        if (cells != null) turnCell(cells, pos, 1);
         if(enableLogging){
-            rebuildLinesFromUndoStack(); // Rebuild lines from updated stack
+            logChange(pos.row() + "," + pos.col());
         }
     }
 
@@ -198,34 +324,43 @@ public class GameLogger {
     }
 
     /** TIME LOGGING */
-    private void handleTimeLine(String line) {
-        String timePart = line.substring(6).trim();
-        if(!timePart.isEmpty()) bestTime = Long.parseLong(timePart);
-    }
-
     public long getAccumulatedTime() {
         return accumulatedTime;
     }
 
-    public void saveAccumulatedTime(long time) {
+    // called by the timer every second, only the time field of the file is overwritten
+    public synchronized void saveAccumulatedTime(long time) {
         if (!enableLogging) return;
-        accumulatedTime = time;
-        updateLine("accumulated: ", accumulatedTime);
-    }
-    
-    private void updateLine(String prefix, long value) {
-        for (int i = 0; i < lines.size(); i++) {
-            if (lines.get(i).startsWith(prefix)) {
-                lines.set(i, prefix + value);
-                save();
-                return;
+        accumulatedTime = Math.max(0, time);
+        boolean found = false;
+        for (int i = 0; i < lines.size() && !found; i++) {
+            if (lines.get(i).startsWith(ACCUMULATED)) {
+                lines.set(i, accumulatedLine(accumulatedTime));
+                found = true;
             }
         }
-        lines.add(prefix + value);
-        save();
+        if (!found || accumulatedTime > MAX_INLINE_TIME) {
+            if (!found) lines.add(accumulatedLine(accumulatedTime));
+            save();
+            return;
+        }
+        if (flushInterval > 0) {
+            timePending = true;
+            markDirty();
+            return;
+        }
+        try {
+            writeTime(accumulatedTime, fileBinary);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String accumulatedLine(long time) {
+        return ACCUMULATED + String.format("%0" + TIME_DIGITS + "d", time);
     }
 
-    public void saveBestTime(long time){
+    public synchronized void saveBestTime(long time){
         if(!enableLogging) return;
         if(time < bestTime){
             bestTime = time;
@@ -246,19 +381,21 @@ public class GameLogger {
 
 
     /** STACK LOGGING */
-    public Position undoLastMove() {
+    public synchronized Position undoLastMove() {
         if (undoStack.isEmpty()) return null;
         Position lastMove = undoStack.pop();
         redoStack.push(lastMove);
-        if(enableLogging) rebuildLinesFromUndoStack();
+        if (cells != null) turnCell(cells, lastMove, -1);
+        if(enableLogging) logChange(UNDO_RECORD);
         return lastMove;
     }
 
-    public Position redoLastMove() {
+    public synchronized Position redoLastMove() {
         if (redoStack.isEmpty()) return null;
         Position nextMove = redoStack.pop();
         undoStack.push(nextMove);
-        if(enableLogging) rebuildLinesFromUndoStack();
+        if (cells != null) turnCell(cells, nextMove, 1);
+        if(enableLogging) logChange(REDO_RECORD);
         return nextMove;
     }
 
@@ -276,14 +413,267 @@ public class GameLogger {
         save();
     }
 
-    public void clearStack(){
+    /** JOURNAL */
+    public boolean isJournalMode() {
+        return journalMode;
+    }
+
+    public synchronized void setJournalMode(boolean journalMode) {
+        if (this.journalMode && !journalMode) checkpoint();
+        this.journalMode = journalMode;
+    }
+
+    // rewrites the whole log compacted (see rebuildLogStructure()), in write-behind mode on the background writer
+    public synchronized void checkpoint() {
+        if (!enableLogging) return;
+        rebuildLinesFromUndoStack();
+    }
+
+    public synchronized boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
+    // the log is rewritten in the new format now, a log without a grid size stays text until it has one
+    public synchronized void setBinaryFormat(boolean binaryFormat) {
+        if (this.binaryFormat == binaryFormat) return;
+        this.binaryFormat = binaryFormat;
+        save();
+    }
+
+    /** CHECKPOINTS */
+    public synchronized int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    // a checkpoint of the board is appended after every this many records, 0 appends none
+    public synchronized void setCheckpointInterval(int records) {
+        checkpointInterval = Math.max(0, records);
+    }
+
+    public synchronized int getUndoDepth() {
+        return undoDepth;
+    }
+
+    // moves that stay undoable when the journal is compacted, the older ones become part of the node states
+    public synchronized void setUndoDepth(int undoDepth) {
+        this.undoDepth = Math.max(0, undoDepth);
+    }
+
+    /** WRITE-BEHIND */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    // 0 switches write-behind off, what is still pending is written before this returns
+    public void setWriteBehind(long flushIntervalMillis) {
+        if (flushInterval > 0 && flushIntervalMillis <= 0) {
+            await(() -> {
+                writePending();
+                closeJournal(); // the calling thread owns the journal from now on
+            });
+        }
+        flushInterval = Math.max(0, flushIntervalMillis);
+    }
+
+    // writes the pending changes now instead of at the end of the interval, does not wait for them
+    public void flush() {
+        if (flushInterval > 0) WRITER.execute(this::writePending);
+    }
+
+    // waits until everything the loggers were asked to write is on disk, for readers of the log files and shutdown
+    public static void awaitWrites() {
+        await(() -> {
+            for (GameLogger logger : List.copyOf(DIRTY)) logger.writePending();
+        });
+    }
+
+    private static void await(Runnable task) {
+        try {
+            WRITER.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void markDirty() {
+        DIRTY.add(this);
+        if (flushScheduled) return;
+        flushScheduled = true;
+        WRITER.schedule(this::writePending, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    // runs on the writer: takes the pending changes under the lock and writes them outside of it
+    private void writePending() {
+        List<String> content;
+        List<String> records;
+        long time;
+        boolean binary;
+        int cols;
+        synchronized (this) {
+            DIRTY.remove(this);
+            flushScheduled = false;
+            content = rewritePending ? new ArrayList<>(lines) : null;
+            records = new ArrayList<>(pendingRecords);
+            time = timePending && !rewritePending ? accumulatedTime : -1; // a rewrite has the time already
+            binary = fileBinary;
+            cols = fileCols;
+            rewritePending = false;
+            pendingRecords.clear();
+            timePending = false;
+        }
+        try {
+            if (content != null) writeFile(content, binary);
+            if (!records.isEmpty()) appendRecords(records, binary, cols);
+            if (time >= 0) writeTime(time, binary);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // deletes the log file, changes not written yet are dropped
+    public void deleteLog() {
+        if (!enableLogging) return;
+        Runnable delete = () -> {
+            synchronized (this) {
+                DIRTY.remove(this);
+                rewritePending = false;
+                pendingRecords.clear();
+                timePending = false;
+            }
+            closeJournal();
+            timeOffset = -1;
+            try {
+                Files.deleteIfExists(logPath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        };
+        if (flushInterval > 0) WRITER.execute(delete);
+        else delete.run();
+    }
+
+    // closes the journal, call before the log file is moved or deleted; in write-behind mode after the pending writes
+    public void close() {
+        if (flushInterval > 0) {
+            WRITER.execute(() -> {
+                writePending();
+                closeJournal();
+            });
+        } else {
+            closeJournal();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal = null;
+    }
+
+    private void logChange(String record) {
+        if (!journalMode) {
+            rebuildLinesFromUndoStack();
+            return;
+        }
+        appendRecord(record);
+        if (cells == null || checkpointInterval <= 0 || ++sinceCheckpoint < checkpointInterval) return;
+        if (++checkpoints >= CHECKPOINTS_PER_SEGMENT) {
+            checkpoint(); // the rewrite compacts the segment and ends with a checkpoint itself
+        } else {
+            sinceCheckpoint = 0;
+            appendRecord(LogState.checkpointLine(cells));
+        }
+    }
+
+    private void appendRecord(String record) {
+        journalRecords++;
+        if (flushInterval > 0) {
+            pendingRecords.add(record);
+            markDirty();
+            return;
+        }
+        try {
+            appendRecords(List.of(record), fileBinary, fileCols);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private FileChannel journal() throws IOException {
+        if (journal == null) journal = FileChannel.open(logPath, StandardOpenOption.WRITE);
+        return journal;
+    }
+
+    private void appendRecords(List<String> records, boolean binary, int cols) throws IOException {
+        ByteBuffer buffer;
+        if (binary) {
+            BinaryLogWriter writer = new BinaryLogWriter();
+            for (String record : records) {
+                if (record.startsWith(LogState.CHECKPOINT_PREFIX)) writer.writeCheckpoint(LogState.checkpointCells(record));
+                else writer.writeRecord(LogState.recordOf(record, cols));
+            }
+            buffer = ByteBuffer.wrap(writer.toByteArray());
+        } else {
+            StringBuilder text = new StringBuilder();
+            for (String record : records) text.append(record).append(System.lineSeparator());
+            buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        FileChannel channel = journal();
+        long position = channel.size();
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+
+    // overwrites the fixed-width time field the last full write left in the file
+    private void writeTime(long time, boolean binary) throws IOException {
+        if (timeOffset < 0) return; // nothing written yet, the first full write has the time
+        byte[] field = binary ? BinaryLogWriter.timeField(time)
+                : String.format("%0" + TIME_DIGITS + "d", time).getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.wrap(field);
+        FileChannel channel = journal();
+        long position = timeOffset;
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+
+    private void writeFile(List<String> content, boolean binary) throws IOException {
+        closeJournal();
+        timeOffset = -1;
+        Files.createDirectories(logPath.getParent());
+        if (binary) {
+            BinaryLogWriter writer = new BinaryLogWriter().writeState(LogState.fromLines(content));
+            Files.write(logPath, writer.toByteArray());
+            timeOffset = writer.timeOffset();
+            return;
+        }
+        Files.write(logPath, content); // UTF-8, lines end with the line separator
+        long offset = 0;
+        for (String line : content) {
+            if (line.startsWith(ACCUMULATED) && line.length() == ACCUMULATED.length() + TIME_DIGITS) {
+                timeOffset = offset + ACCUMULATED.length();
+                break;
+            }
+            offset += line.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length();
+        }
+    }
+
+    public synchronized void clearStack(){
         if (!enableLogging) return;
         undoStack.clear();
         redoStack.clear();
+        if (cells != null) {
+            // the node states are the board the moves led to
+            nodeStates.clear();
+            nodeStates.addAll(LogState.nodeLines(cells, gridCols));
+        }
     }
 
     /** GENERAL PURPOSE **/
-    public void clear() {
+    public synchronized void clear() {
         if (!enableLogging) return;
         try {
             // Clear moves but preserve node states and best time
@@ -303,19 +693,20 @@ public class GameLogger {
             redoStack.clear();
             accumulatedTime = 0;
             nodeStates.clear();  // Clear node states
+            cells = null;
             lines.removeIf(line -> line.matches("\\{[A-Z]\\[\\d+@\\d+\\].*}"));
             
             List<String> newLines = new ArrayList<>();
             newLines.add(gridSize);
             newLines.add("time: " + bestTime);
-            newLines.add("accumulated: 0");
+            newLines.add(accumulatedLine(0));
             newLines.add("difficulty: " + actualdifficulty);
             newLines.addAll(nodeStates);
             
             lines.clear();
             lines.addAll(newLines);
 
-            Files.write(logPath, newLines);
+            writeAll();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -326,12 +717,27 @@ public class GameLogger {
     }
     private void save() {
         if (!enableLogging) return;
+        if (journalRecords > 0) rebuildLogStructure(); // the appended records would be lost otherwise
         try {
-            Files.write(logPath, lines);
+            writeAll();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    // writes lines as the whole file, the records appended before are part of them
+    private void writeAll() throws IOException {
+        journalRecords = 0;
+        fileBinary = binaryFormat && gridSize != null;
+        if (fileBinary) fileCols = Integer.parseInt(gridSize.substring(6, gridSize.length() - 1).split(",")[1]);
+        if (flushInterval > 0) {
+            pendingRecords.clear();
+            rewritePending = true;
+            markDirty();
+            return;
+        }
+        writeFile(lines, fileBinary);
+    }
     public Path getLogPath(){
         return logPath;
     }
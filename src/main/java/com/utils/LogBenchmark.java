@@ -0,0 +1,116 @@
+package com.utils;
+/*
+ * author: xstahl01
+ * Compares the text and the binary log format on one random board with a long move history. Run without the GUI:
+ *   java -cp target/classes com.utils.LogBenchmark [rows] [cols] [moves] [repeats]
+ * Loading covers reading the file and building the game from it: the text log once with the regexes GameLogger
+ * and LevelLoader use for it, once through LogState (split by hand), and the binary log.
+ */
+
+import com.common.BoardStore;
+import com.common.Connectors;
+import com.game.Game;
+import com.game.LevelLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class LogBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int moves = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+        int repeats = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        LogState state = randomLog(rows, cols, moves, new Random(42));
+        Path dir = Files.createTempDirectory("log-benchmark");
+        Path text = dir.resolve("text.log");
+        Path binary = dir.resolve("binary.log");
+        Files.write(text, state.toLines());
+        BinaryLogWriter.write(binary, state);
+
+        // warm up the JIT so the first format is not measured in the interpreter
+        for (int i = 0; i < 5; i++) {
+            loadWithRegexes(text);
+            LevelLoader.loadLevel(LogState.read(text));
+            LevelLoader.loadLevel(LogState.read(binary));
+        }
+        long[] regex = new long[repeats];
+        long[] split = new long[repeats];
+        long[] binaryTimes = new long[repeats];
+        for (int i = 0; i < repeats; i++) {
+            long start = System.nanoTime();
+            loadWithRegexes(text);
+            regex[i] = System.nanoTime() - start;
+            start = System.nanoTime();
+            LevelLoader.loadLevel(LogState.read(text));
+            split[i] = System.nanoTime() - start;
+            start = System.nanoTime();
+            LevelLoader.loadLevel(LogState.read(binary));
+            binaryTimes[i] = System.nanoTime() - start;
+        }
+
+        long textSize = Files.size(text);
+        long binarySize = Files.size(binary);
+        System.out.printf("%dx%d board, %d moves, median of %d loads%n", rows, cols, moves, repeats);
+        System.out.println("format            bytes   load ms");
+        System.out.printf("text, regexes  %9d  %8.2f%n", textSize, median(regex));
+        System.out.printf("text, LogState %9d  %8.2f%n", textSize, median(split));
+        System.out.printf("binary         %9d  %8.2f%n", binarySize, median(binaryTimes));
+        System.out.printf("binary is %.1fx smaller and loads %.1fx faster than the text log%n",
+                (double) textSize / binarySize, median(regex) / median(binaryTimes));
+
+        Files.delete(text);
+        Files.delete(binary);
+        Files.delete(dir);
+    }
+
+    // the text log read the way the game did before the binary format: a regex per line, then LevelLoader
+    private static Game loadWithRegexes(Path text) throws IOException {
+        List<String> lines = Files.readAllLines(text);
+        int nodes = 0;
+        int moves = 0;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.matches("\\{[A-Z]\\[\\d+@\\d+\\].*}")) {
+                nodes++;
+            } else if (trimmed.matches("\\d+,\\d+")) {
+                moves++;
+            }
+        }
+        if (nodes + moves == 0) throw new IOException("empty log");
+        return LevelLoader.loadLevel(text.toString());
+    }
+
+    // every cell a node in a random state, the history turns random cells with some undos and redos in between
+    private static LogState randomLog(int rows, int cols, int moves, Random random) {
+        LogState state = new LogState(rows, cols);
+        state.setBestTime(95_000);
+        state.setAccumulatedTime(1_234_567);
+        state.setDifficulty("Hard");
+        for (int index = 0; index < rows * cols; index++) {
+            int type = index == 0 ? BoardStore.TYPE_POWER : BoardStore.TYPE_LINK;
+            int mask = 1 + random.nextInt(15);
+            if (Integer.bitCount(mask) < 2) mask |= Connectors.rotateClockwise(mask); // links need two sides
+            state.setCell(index, type, mask, random.nextInt(4));
+        }
+        for (int i = 0; i < moves; i++) {
+            int roll = random.nextInt(20);
+            if (roll == 0) state.addRecord(LogState.UNDO);
+            else if (roll == 1) state.addRecord(LogState.REDO);
+            else state.addRecord(random.nextInt(rows * cols));
+        }
+        return state;
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+}
@@ -0,0 +1,76 @@
+package com.utils;
+/*
+ * author: xstahl01
+ * Converts existing level logs between the text and the binary format, without the GUI:
+ *   java -cp target/classes com.utils.LogConverter <binary|text> [log file or directory ...]
+ * Directories are searched for *.log files, data/log by default. A log is written to a temporary file first and
+ * then moved over the old one, so a failed conversion never leaves a half written log.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class LogConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !args[0].equals("binary") && !args[0].equals("text")) {
+            System.err.println("usage: LogConverter <binary|text> [log file or directory ...]");
+            System.exit(1);
+        }
+        boolean binary = args[0].equals("binary");
+        List<Path> roots = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) roots.add(Paths.get(args[i]));
+        if (roots.isEmpty()) roots.add(Paths.get("data", "log"));
+
+        long before = 0;
+        long after = 0;
+        int converted = 0;
+        for (Path log : logs(roots)) {
+            long size = Files.size(log);
+            if (!convert(log, binary)) continue;
+            before += size;
+            after += Files.size(log);
+            converted++;
+            System.out.printf("%s: %d -> %d bytes%n", log, size, Files.size(log));
+        }
+        System.out.printf("%d logs converted to %s, %d -> %d bytes%n", converted, args[0], before, after);
+    }
+
+    // false when the log is in that format already
+    public static boolean convert(Path log, boolean binary) throws IOException {
+        if (BinaryLogReader.isBinary(log) == binary) return false;
+        LogState state = LogState.read(log);
+        if (binary && !state.hasGrid()) {
+            System.err.println(log + ": no grid size, left as text");
+            return false;
+        }
+        Path temp = log.resolveSibling(log.getFileName() + ".tmp");
+        if (binary) BinaryLogWriter.write(temp, state);
+        else Files.write(temp, state.toLines());
+        Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    private static List<Path> logs(List<Path> roots) throws IOException {
+        List<Path> logs = new ArrayList<>();
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                logs.add(root);
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(root)) {
+                logs.addAll(files.filter(path -> path.toString().endsWith(".log") && Files.isRegularFile(path))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return logs;
+    }
+}
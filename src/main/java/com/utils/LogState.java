@@ -0,0 +1,395 @@
+package com.utils;
+/*
+ * author: xstahl01
+ * Everything a level log holds, independent of the format it is saved in: the header, one byte per cell and the
+ * journal records. read() tells the text logs from the binary ones (see BinaryLogWriter) by their first bytes.
+ * A cell byte is type << 6 | connector mask << 2 | rotations (type BoardStore.TYPE_*, mask Side.bit()), 0 is empty.
+ * A record is the index of the turned cell ((row-1)*cols + col-1), or UNDO / REDO.
+ * The cells are the board before the first record. A checkpoint is a copy of the board after the first checkpointAt
+ * records, so a log can be resumed from its last checkpoint with only the records after it replayed.
+ */
+
+import com.common.BoardStore;
+import com.common.Connectors;
+import com.common.Side;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+public class LogState {
+    public static final int UNDO = -1;
+    public static final int REDO = -2;
+    public static final long NO_TIME = Long.MAX_VALUE;
+    public static final String CHECKPOINT_PREFIX = "checkpoint: ";
+
+    private int rows;
+    private int cols;
+    private boolean hasGrid;
+    private long bestTime = NO_TIME;
+    private long accumulatedTime;
+    private String difficulty;
+    private byte[] cells = new byte[0];
+    private int[] records = new int[16];
+    private int recordCount;
+    private byte[] checkpoint; // cells of the last checkpoint, null when the log has none
+    private int checkpointAt; // records before it
+    boolean binary; // read from a binary log, set by BinaryLogReader
+
+    public LogState(int rows, int cols) {
+        setGrid(rows, cols);
+    }
+
+    public static LogState read(Path path) throws IOException {
+        if (BinaryLogReader.isBinary(path)) return BinaryLogReader.read(path);
+        return fromLines(Files.readAllLines(path));
+    }
+
+    // the format the log was read in, a new state is text
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    // false for text logs without the grid line, the size is then the smallest one that fits the nodes
+    public boolean hasGrid() {
+        return hasGrid;
+    }
+
+    public long bestTime() {
+        return bestTime;
+    }
+
+    public void setBestTime(long bestTime) {
+        this.bestTime = bestTime;
+    }
+
+    public long accumulatedTime() {
+        return accumulatedTime;
+    }
+
+    public void setAccumulatedTime(long accumulatedTime) {
+        this.accumulatedTime = accumulatedTime;
+    }
+
+    // null when the log has no difficulty line
+    public String difficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(String difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    public byte[] cells() {
+        return cells;
+    }
+
+    public int cell(int index) {
+        return cells[index] & 0xFF;
+    }
+
+    public void setCell(int index, int type, int mask, int rotations) {
+        cells[index] = (byte) (type << 6 | (mask & 0xF) << 2 | rotations & 3);
+    }
+
+    public static int type(int cell) {
+        return cell >>> 6;
+    }
+
+    public static int mask(int cell) {
+        return cell >>> 2 & 0xF;
+    }
+
+    public static int rotations(int cell) {
+        return cell & 3;
+    }
+
+    public boolean hasNodes() {
+        for (byte cell : cells) {
+            if (cell != 0) return true;
+        }
+        return false;
+    }
+
+    public int recordCount() {
+        return recordCount;
+    }
+
+    public int record(int i) {
+        return records[i];
+    }
+
+    public void addRecord(int record) {
+        if (recordCount == records.length) records = Arrays.copyOf(records, recordCount * 2);
+        records[recordCount++] = record;
+    }
+
+    public byte[] checkpoint() {
+        return checkpoint;
+    }
+
+    public int checkpointAt() {
+        return checkpointAt;
+    }
+
+    // the board as it is after the records added so far
+    public void setCheckpoint(byte[] cells) {
+        checkpoint = cells;
+        checkpointAt = recordCount;
+    }
+
+    // signed turns the records from the given one on make: index + 1 for a clockwise turn, -(index + 1) for a turn back
+    public int[] turnsFrom(int from) {
+        int[] undo = new int[recordCount];
+        int[] redo = new int[recordCount];
+        int undoSize = 0;
+        int redoSize = 0;
+        int[] turns = new int[Math.max(0, recordCount - from)];
+        int count = 0;
+        for (int i = 0; i < recordCount; i++) {
+            int record = records[i];
+            int turn = 0;
+            if (record == UNDO) {
+                if (undoSize > 0) {
+                    int cell = undo[--undoSize];
+                    redo[redoSize++] = cell;
+                    turn = -(cell + 1);
+                }
+            } else if (record == REDO) {
+                if (redoSize > 0) {
+                    int cell = redo[--redoSize];
+                    undo[undoSize++] = cell;
+                    turn = cell + 1;
+                }
+            } else {
+                undo[undoSize++] = record;
+                redoSize = 0; // a new move drops what could be redone
+                turn = record + 1;
+            }
+            if (i >= from && turn != 0) turns[count++] = turn;
+        }
+        return Arrays.copyOf(turns, count);
+    }
+
+    // the board after all records, from the last checkpoint on
+    public byte[] currentCells() {
+        byte[] current = (checkpoint != null ? checkpoint : cells).clone();
+        for (int turn : turnsFrom(checkpoint != null ? checkpointAt : 0)) {
+            int index = Math.abs(turn) - 1;
+            current[index] = (byte) turned(current[index] & 0xFF, turn > 0 ? 1 : -1);
+        }
+        return current;
+    }
+
+    // the cell turned clockwise (1) or back (-1), the rotations stay counted once per different state
+    public static int turned(int cell, int turns) {
+        if (cell == 0) return 0;
+        int mask = turns > 0 ? Connectors.rotateClockwise(mask(cell)) : Connectors.rotateCounterClockwise(mask(cell));
+        int rotations = Math.floorMod(rotations(cell) + turns, 4) % Connectors.orientations(mask);
+        return type(cell) << 6 | mask << 2 | rotations;
+    }
+
+    public int index(int row, int col) {
+        return (row - 1) * cols + (col - 1);
+    }
+
+    private void setGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.hasGrid = true;
+        this.cells = new byte[rows * cols];
+    }
+
+    /** TEXT FORMAT */
+    // the lines GameLogger writes, node and move lines are split by hand instead of matched with regexes
+    public static LogState fromLines(List<String> lines) {
+        LogState state = new LogState(0, 0);
+        state.hasGrid = false;
+        List<int[]> nodes = new ArrayList<>(); // row, col, cell
+        List<int[]> moves = new ArrayList<>(); // row, col or 0, record
+        byte[] lastCheckpoint = null;
+        int lastCheckpointAt = 0; // moves before it
+        int maxRow = 0;
+        int maxCol = 0;
+        for (String line : lines) {
+            if (line == null) continue;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) continue;
+            if (trimmed.startsWith("grid:[") && trimmed.endsWith("]")) {
+                String[] parts = trimmed.substring(6, trimmed.length() - 1).split(",");
+                state.setGrid(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+            } else if (trimmed.startsWith("time: ")) {
+                String time = trimmed.substring(6).trim();
+                if (!time.isEmpty()) state.bestTime = Long.parseLong(time);
+            } else if (trimmed.startsWith("accumulated: ")) {
+                String time = trimmed.substring(13).trim();
+                if (!time.isEmpty()) state.accumulatedTime = Long.parseLong(time);
+            } else if (trimmed.startsWith("difficulty: ")) {
+                state.difficulty = trimmed.substring(12).trim();
+            } else if (trimmed.startsWith("{")) {
+                int[] node = parseNode(trimmed);
+                if (node == null) continue;
+                nodes.add(node);
+                maxRow = Math.max(maxRow, node[0]);
+                maxCol = Math.max(maxCol, node[1]);
+            } else if (trimmed.startsWith(CHECKPOINT_PREFIX)) {
+                try {
+                    lastCheckpoint = checkpointCells(trimmed);
+                    lastCheckpointAt = moves.size();
+                } catch (IllegalArgumentException e) {
+                    // a checkpoint cut off by a crash, the records before it are still there
+                }
+            } else if (trimmed.equals("undo")) {
+                moves.add(new int[] {0, 0, UNDO});
+            } else if (trimmed.equals("redo")) {
+                moves.add(new int[] {0, 0, REDO});
+            } else {
+                int comma = trimmed.indexOf(',');
+                if (comma < 0) continue;
+                try {
+                    int row = Integer.parseInt(trimmed.substring(0, comma));
+                    int col = Integer.parseInt(trimmed.substring(comma + 1));
+                    moves.add(new int[] {row, col, 0});
+                    maxRow = Math.max(maxRow, row);
+                    maxCol = Math.max(maxCol, col);
+                } catch (NumberFormatException e) {
+                    // not a move line
+                }
+            }
+        }
+        if (!state.hasGrid) {
+            state.setGrid(maxRow, maxCol);
+            state.hasGrid = false;
+        }
+        for (int[] node : nodes) {
+            if (node[0] > state.rows || node[1] > state.cols) continue;
+            state.cells[state.index(node[0], node[1])] = (byte) node[2];
+        }
+        for (int i = 0; i <= moves.size(); i++) {
+            if (lastCheckpoint != null && i == lastCheckpointAt && lastCheckpoint.length == state.cells.length) {
+                state.setCheckpoint(lastCheckpoint);
+            }
+            if (i == moves.size()) break;
+            int[] move = moves.get(i);
+            if (move[2] < 0) {
+                state.addRecord(move[2]);
+            } else if (move[0] >= 1 && move[1] >= 1 && move[0] <= state.rows && move[1] <= state.cols) {
+                state.addRecord(state.index(move[0], move[1]));
+            }
+        }
+        return state;
+    }
+
+    // {L[2@3][NORTH,EAST][1]} to row, col and the cell byte, null for empty nodes and broken lines
+    private static int[] parseNode(String line) {
+        if (line.length() < 3 || !line.endsWith("}") || line.charAt(2) != '[') return null;
+        int type = typeOf(line.charAt(1));
+        if (type == BoardStore.TYPE_EMPTY) return null;
+        int at = line.indexOf('@', 3);
+        int posEnd = line.indexOf(']', 3);
+        if (at < 0 || posEnd < at || posEnd + 1 >= line.length() || line.charAt(posEnd + 1) != '[') return null;
+        int sidesEnd = line.indexOf(']', posEnd + 1);
+        if (sidesEnd < 0) return null;
+        try {
+            int row = Integer.parseInt(line.substring(3, at));
+            int col = Integer.parseInt(line.substring(at + 1, posEnd));
+            int mask = 0;
+            for (String side : line.substring(posEnd + 2, sidesEnd).split(",")) {
+                if (!side.isBlank()) mask |= Side.valueOf(side.trim()).bit();
+            }
+            int rotations = 0;
+            if (sidesEnd + 1 < line.length() && line.charAt(sidesEnd + 1) == '[') {
+                int rotEnd = line.indexOf(']', sidesEnd + 1);
+                if (rotEnd > sidesEnd + 2) rotations = Integer.parseInt(line.substring(sidesEnd + 2, rotEnd).trim());
+            }
+            if (row < 1 || col < 1) return null;
+            return new int[] {row, col, type << 6 | mask << 2 | rotations & 3};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int typeOf(char letter) {
+        switch (letter) {
+            case 'P': return BoardStore.TYPE_POWER;
+            case 'B': return BoardStore.TYPE_BULB;
+            case 'L': return BoardStore.TYPE_LINK;
+            default: return BoardStore.TYPE_EMPTY;
+        }
+    }
+
+    // node lines as GameLogger.logNodeStates() writes them, row by row, without the empty cells
+    public List<String> nodeLines() {
+        return nodeLines(cells, cols);
+    }
+
+    public static List<String> nodeLines(byte[] cells, int cols) {
+        List<String> lines = new ArrayList<>();
+        for (int index = 0; index < cells.length; index++) {
+            int cell = cells[index] & 0xFF;
+            if (cell == 0) continue;
+            StringBuilder sides = new StringBuilder();
+            for (Side side : Connectors.SIDES) {
+                if ((mask(cell) & side.bit()) == 0) continue;
+                if (sides.length() > 0) sides.append(',');
+                sides.append(side.name());
+            }
+            lines.add(String.format("{%s[%d@%d][%s][%d]}", "?PBL".charAt(type(cell)), index / cols + 1,
+                    index % cols + 1, sides, rotations(cell)));
+        }
+        return lines;
+    }
+
+    // a checkpoint in the text format, the cells as hex on one line
+    public static String checkpointLine(byte[] cells) {
+        return CHECKPOINT_PREFIX + HexFormat.of().formatHex(cells);
+    }
+
+    public static byte[] checkpointCells(String line) {
+        return HexFormat.of().parseHex(line.substring(CHECKPOINT_PREFIX.length()).trim());
+    }
+
+    // r,c for a move, "undo" or "redo"
+    public String recordLine(int record) {
+        if (record == UNDO) return "undo";
+        if (record == REDO) return "redo";
+        return (record / cols + 1) + "," + (record % cols + 1);
+    }
+
+    // record of a journal line ("r,c", "undo" or "redo") on a board with the given columns
+    public static int recordOf(String line, int cols) {
+        if (line.equals("undo")) return UNDO;
+        if (line.equals("redo")) return REDO;
+        int comma = line.indexOf(',');
+        int row = Integer.parseInt(line.substring(0, comma));
+        int col = Integer.parseInt(line.substring(comma + 1));
+        return (row - 1) * cols + (col - 1);
+    }
+
+    // the text form of the whole log, in the order GameLogger writes it
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>();
+        if (hasGrid) lines.add("grid:[" + rows + "," + cols + "]");
+        lines.add("time: " + (bestTime == NO_TIME ? "" : bestTime));
+        lines.add("accumulated: " + accumulatedTime);
+        if (difficulty != null) lines.add("difficulty: " + difficulty);
+        lines.addAll(nodeLines());
+        for (int i = 0; i <= recordCount; i++) {
+            if (checkpoint != null && i == checkpointAt) lines.add(checkpointLine(checkpoint));
+            if (i < recordCount) lines.add(recordLine(records[i]));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,134 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Differential test of the incremental light: a game updating its light incrementally is played side by side
+ * with the same game recalculating everything after each change, and every cell has to be lit the same way.
+ */
+
+import com.common.BoardStore;
+import com.common.Position;
+import com.common.Side;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.game.RandomBoards.randomBoard;
+import static com.game.RandomBoards.randomPosition;
+import static com.game.RandomBoards.randomSides;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameLightTest {
+    private static final int BOARDS = 150;
+    private static final int MOVES = 300;
+
+    @Test
+    public void singleTurnsMatchFullRecalculation() {
+        for (boolean sparse : new boolean[] {false, true}) {
+            for (long seed = 0; seed < BOARDS; seed++) {
+                Random random = new Random(seed);
+                Game[] games = twins(random, sparse);
+                for (int move = 0; move < MOVES; move++) {
+                    int row = random.nextInt(games[0].rows()) + 1;
+                    int col = random.nextInt(games[0].cols()) + 1;
+                    boolean back = random.nextBoolean();
+                    for (Game game : games) {
+                        if (back) game.fieldAt(row, col).reverseTurn();
+                        else game.fieldAt(row, col).turn();
+                    }
+                    assertSameLight(games, "seed " + seed + ", move " + move + (sparse ? ", sparse" : ""));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void batchesMatchFullRecalculation() {
+        for (boolean sparse : new boolean[] {false, true}) {
+            for (long seed = 0; seed < BOARDS; seed++) {
+                Random random = new Random(seed);
+                Game[] games = twins(random, sparse);
+                for (int batch = 0; batch < MOVES / 10; batch++) {
+                    // small batches are handled cell by cell, big ones recalculate the whole board
+                    int size = random.nextBoolean() ? 1 + random.nextInt(4) : 1 + random.nextInt(40);
+                    List<Position> moves = new ArrayList<>();
+                    for (int i = 0; i < size; i++) {
+                        moves.add(randomPosition(games[0], random));
+                    }
+                    for (Game game : games) game.applyMoves(moves);
+                    assertSameLight(games, "seed " + seed + ", batch " + batch + (sparse ? ", sparse" : ""));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void replacedNodesMatchFullRecalculation() {
+        for (boolean sparse : new boolean[] {false, true}) {
+            for (long seed = 0; seed < BOARDS; seed++) {
+                Random random = new Random(seed);
+                Game[] games = twins(random, sparse);
+                for (int move = 0; move < MOVES; move++) {
+                    Position position = randomPosition(games[0], random);
+                    int roll = random.nextInt(4);
+                    Side[] connectors = randomSides(random, 2);
+                    for (Game game : games) {
+                        if (game.node(position).isPower()) continue; // the level keeps its single power node
+                        switch (roll) {
+                            case 0 -> game.createLinkNode(position, connectors);
+                            case 1 -> game.createBulbNode(position, connectors[0]);
+                            case 2 -> game.setNode(position.row(), position.col(), BoardStore.TYPE_EMPTY, 0);
+                            default -> game.node(position).turn();
+                        }
+                    }
+                    assertSameLight(games, "seed " + seed + ", move " + move + (sparse ? ", sparse" : ""));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void replacedLinkSwitchesOffTheCellsItFed() {
+        Game game = new Game(1, 4);
+        game.createPowerNode(Position.of(1, 1), Side.EAST);
+        game.createLinkNode(Position.of(1, 2), Side.EAST, Side.WEST);
+        game.createLinkNode(Position.of(1, 3), Side.EAST, Side.WEST);
+        game.createBulbNode(Position.of(1, 4), Side.WEST);
+        game.init();
+        assertTrue(game.isWon());
+
+        game.createLinkNode(Position.of(1, 2), Side.NORTH, Side.SOUTH);
+        assertFalse(game.node(Position.of(1, 3)).light());
+        for (int i = 0; i < 4; i++) game.fieldAt(1, 4).turn();
+        assertFalse(game.isWon());
+        assertFalse(game.node(Position.of(1, 4)).light());
+    }
+
+    // the same random board twice, the second one recalculates its whole light after every change
+    private static Game[] twins(Random random, boolean sparse) {
+        int rows = 2 + random.nextInt(15);
+        int cols = 2 + random.nextInt(15);
+        long seed = random.nextLong();
+        Game incremental = randomBoard(rows, cols, sparse, new Random(seed));
+        Game full = randomBoard(rows, cols, sparse, new Random(seed));
+        full.setIncrementalLight(false);
+        return new Game[] {incremental, full};
+    }
+
+    private static void assertSameLight(Game[] games, String where) {
+        Game incremental = games[0];
+        Game full = games[1];
+        for (int row = 1; row <= full.rows(); row++) {
+            for (int col = 1; col <= full.cols(); col++) {
+                assertEquals(full.fieldAt(row, col).light(), incremental.fieldAt(row, col).light(),
+                        "light of " + row + "," + col + ", " + where);
+            }
+        }
+        assertEquals(full.litBulbs(), incremental.litBulbs(), "lit bulbs, " + where);
+        assertEquals(full.totalBulbs(), incremental.totalBulbs(), "bulbs, " + where);
+        assertEquals(full.isWon(), incremental.isWon(), "won, " + where);
+    }
+}
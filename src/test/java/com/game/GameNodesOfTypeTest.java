@@ -0,0 +1,52 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Game.nodesOfType has to list every cell of the asked type exactly once, the empty cells included, on dense
+ * boards where the index lists them and on sparse boards where it only counts them.
+ */
+
+import com.common.BoardStore;
+import com.common.GameNode;
+import com.common.Position;
+import com.common.Side;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameNodesOfTypeTest {
+
+    @Test
+    public void emptyCellsAreListedOnBothBoards() {
+        for (boolean sparse : new boolean[] {false, true}) {
+            Game game = new Game(3, 3, sparse);
+            game.createPowerNode(Position.of(1, 1), Side.EAST);
+            game.createBulbNode(Position.of(1, 2), Side.WEST);
+            assertEquals(7, game.emptyCount());
+
+            List<GameNode> empty = game.nodesOfType(BoardStore.TYPE_EMPTY);
+            Set<Position> positions = new HashSet<>();
+            for (GameNode node : empty) {
+                assertTrue(node.isEmpty(), node.getPosition() + " is not empty");
+                positions.add(node.getPosition());
+            }
+            assertEquals(game.emptyCount(), empty.size(), "empty nodes" + (sparse ? ", sparse" : ""));
+            assertEquals(game.findEmptyNodes(), positions, "empty cells" + (sparse ? ", sparse" : ""));
+            assertEquals(1, game.nodesOfType(BoardStore.TYPE_POWER).size());
+            assertEquals(1, game.nodesOfType(BoardStore.TYPE_BULB).size());
+            assertEquals(0, game.nodesOfType(BoardStore.TYPE_LINK).size());
+        }
+    }
+
+    @Test
+    public void unknownTypeIsRejected() {
+        Game game = new Game(2, 2, true);
+        assertThrows(IllegalArgumentException.class, () -> game.nodesOfType(BoardStore.TYPE_LINK + 1));
+        assertThrows(IllegalArgumentException.class, () -> game.nodesOfType(-1));
+    }
+}
@@ -0,0 +1,100 @@
+package com.game;
+/*
+ * author: xstahl01
+ * The incremental Zobrist hash of Game has to stay equal to the hash computed from all the nodes, and to the hash
+ * of a new game built directly in the same state, on dense and on sparse boards.
+ */
+
+import com.common.GameNode;
+import com.common.Position;
+import com.common.Side;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static com.game.RandomBoards.randomBoard;
+import static com.game.RandomBoards.randomPosition;
+import static com.game.RandomBoards.randomSides;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class GameStateHashTest {
+    private static final int BOARDS = 100;
+    private static final int MOVES = 300;
+
+    @Test
+    public void turnsUndosAndBatchesKeepTheHash() {
+        for (boolean sparse : new boolean[] {false, true}) {
+            for (long seed = 0; seed < BOARDS; seed++) {
+                Random random = new Random(seed);
+                Game game = randomBoard(2 + random.nextInt(15), 2 + random.nextInt(15), sparse, random);
+                String where = "seed " + seed + (sparse ? ", sparse" : "");
+                assertHash(game, where);
+                Deque<Position> undo = new ArrayDeque<>();
+                for (int move = 0; move < MOVES; move++) {
+                    int roll = random.nextInt(10);
+                    if (roll < 2 && !undo.isEmpty()) {
+                        game.node(undo.pop()).reverseTurn(); // undo the way the game does it
+                    } else if (roll < 3) {
+                        List<Position> batch = new ArrayList<>();
+                        for (int i = random.nextInt(40); i >= 0; i--) batch.add(randomPosition(game, random));
+                        game.applyMoves(batch);
+                    } else {
+                        Position position = randomPosition(game, random);
+                        game.node(position).turn();
+                        undo.push(position);
+                    }
+                    assertHash(game, where + ", move " + move);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void placedNodesKeepTheHash() {
+        for (boolean sparse : new boolean[] {false, true}) {
+            for (long seed = 0; seed < BOARDS; seed++) {
+                Random random = new Random(seed);
+                Game game = randomBoard(2 + random.nextInt(15), 2 + random.nextInt(15), sparse, random);
+                for (int move = 0; move < MOVES; move++) {
+                    Position position = randomPosition(game, random);
+                    if (game.node(position).isPower()) continue;
+                    if (random.nextBoolean()) game.createLinkNode(position, randomSides(random, 2));
+                    else game.createBulbNode(position, randomSides(random, 1)[0]);
+                    assertHash(game, "seed " + seed + ", move " + move + (sparse ? ", sparse" : ""));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void turnedNodeChangesTheHash() {
+        Game game = new Game(1, 2);
+        game.createPowerNode(Position.of(1, 1), Side.EAST);
+        game.createBulbNode(Position.of(1, 2), Side.WEST);
+        long before = game.stateHash();
+        game.node(Position.of(1, 2)).turn();
+        assertNotEquals(before, game.stateHash(), "turned bulb");
+        game.node(Position.of(1, 2)).reverseTurn();
+        assertEquals(before, game.stateHash(), "turned back");
+    }
+
+    // the incremental hash, the hash computed from the nodes and the hash of a copy built from scratch in the other
+    // kind of store
+    private static void assertHash(Game game, String where) {
+        assertEquals(game.computeStateHash(), game.stateHash(), "computed hash, " + where);
+        Game copy = new Game(game.rows(), game.cols(), !game.isSparse());
+        for (GameNode node : game.nodes()) {
+            Position position = node.getPosition();
+            Side[] connectors = node.getConnectors().toArray(new Side[0]);
+            if (node.isPower()) copy.createPowerNode(position, connectors);
+            else if (node.isBulb()) copy.createBulbNode(position, connectors[0]);
+            else copy.createLinkNode(position, connectors);
+        }
+        assertEquals(copy.stateHash(), game.stateHash(), "rebuilt hash, " + where);
+    }
+}
@@ -0,0 +1,49 @@
+package com.game;
+/*
+ * author: xstahl01
+ * Random boards and moves shared by the Game tests, the same Random always gives the same board.
+ */
+
+import com.common.Connectors;
+import com.common.Position;
+import com.common.Side;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+final class RandomBoards {
+    private RandomBoards() {
+    }
+
+    // one power node, dense boards are mostly links, sparse ones mostly empty
+    static Game randomBoard(int rows, int cols, boolean sparse, Random random) {
+        Game game = new Game(rows, cols, sparse);
+        game.createPowerNode(Position.of(random.nextInt(rows) + 1, random.nextInt(cols) + 1), randomSides(random, 1));
+        int empty = sparse ? 6 : 2;
+        for (int row = 1; row <= rows; row++) {
+            for (int col = 1; col <= cols; col++) {
+                Position position = Position.of(row, col);
+                if (game.node(position).isPower()) continue;
+                int roll = random.nextInt(10);
+                if (roll < empty) continue;
+                if (roll < empty + 2) game.createBulbNode(position, randomSides(random, 1)[0]);
+                else game.createLinkNode(position, randomSides(random, 2));
+            }
+        }
+        game.init();
+        return game;
+    }
+
+    static Position randomPosition(Game game, Random random) {
+        return Position.of(random.nextInt(game.rows()) + 1, random.nextInt(game.cols()) + 1);
+    }
+
+    // at least min different sides in random order
+    static Side[] randomSides(Random random, int min) {
+        List<Side> sides = new ArrayList<>(List.of(Connectors.SIDES));
+        Collections.shuffle(sides, random);
+        return sides.subList(0, min + random.nextInt(Connectors.SIDES.length - min + 1)).toArray(new Side[0]);
+    }
+}